@@ -0,0 +1,222 @@
+package mytree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**************************************************************
+
+Read the entries of one directory lazily, keeping only one entry ahead.
+
+-Description:
+    The only thing the tree needs to know before printing an entry is
+    whether another entry will be printed after it (T or L), so looking
+    one accepted entry ahead is enough and the directory is never loaded
+    as a whole, even with millions of entries.
+
+    The directory stays open until the cursor is closed, or until load()
+    reads the rest of it into a list, which the walk does for the parents
+    of a deep directory so a deep tree doesn't run out of file descriptors.
+    To sort the entries (--sort), the whole directory is needed, then it is
+    loaded at once, filtered and sorted, and the cursor goes through that
+    list. With --stats, it is loaded at once too, so its listing is one
+    span of time for the JFR event, and the time spent opening and reading
+    it is reported to WalkStats at the close.
+
+    A directory that can't be read (no permission, no file descriptor
+    left...) gives the entries read before the error, and error() tells
+    why, so it is not mistaken for an empty directory.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class DirectoryCursor implements Closeable {
+
+    private final DirectoryStream<Path> stream;
+    private final Iterator<Path> it;
+    // the entries of a directory already listed, instead of it
+    private final Iterator<FileEntry> listed;
+    private final Predicate<FileEntry> filter;
+    private FileEntry next;
+    private IOException error;
+
+    // only with --stats
+    private final Path dir;
+    private final WalkStats stats;
+    private final WalkStats.ListingEvent event;
+    private long nanos;
+    private int nbEntries;
+    private boolean failed;
+
+    private DirectoryCursor(Path dir, DirectoryStream<Path> stream, IOException error, Predicate<FileEntry> filter, 
+            WalkStats stats, WalkStats.ListingEvent event, long openNanos) {
+        this.dir = dir;
+        this.stream = stream;
+        this.it = stream == null ? null : stream.iterator();
+        this.listed = null;
+        this.filter = filter;
+        this.error = error;
+        this.stats = stats;
+        this.event = event;
+        this.nanos = openNanos;
+        this.failed = error != null;
+        advance();
+    }
+
+    /**
+     * Open a directory
+     * @param dir is the directory
+     * @param filter tells which entries are kept
+     * @param order is the order of the entries, null for the order of the file system
+     * @return the cursor, empty with an error() if the directory can't be read
+     */
+    static DirectoryCursor open(Path dir, Predicate<FileEntry> filter, EntryOrder order) {
+        WalkStats stats = WalkStats.current();
+        long start = stats == null ? 0 : System.nanoTime();
+        WalkStats.ListingEvent event = stats == null ? null : WalkStats.beginListing();
+
+        DirectoryStream<Path> stream = null;
+        IOException error = null;
+        try {
+            FileEntry.simulateLatency();
+            stream = Files.newDirectoryStream(dir);
+        } catch (IOException e) {
+            // no permission or removed while walking
+            error = e;
+        }
+        DirectoryCursor cursor = new DirectoryCursor(dir, stream, error, filter, stats, event,
+                stats == null ? 0 : System.nanoTime() - start);
+        if (order == null && stats == null) {
+            return cursor;
+        }
+
+        // sorted, or measured in one go
+        List<FileEntry> entries = new ArrayList<>();
+        while (cursor.hasNext()) {
+            entries.add(cursor.next());
+        }
+        cursor.close();
+        if (order != null) {
+            order.sort(entries);
+        }
+        return new DirectoryCursor(entries, cursor.error);
+    }
+
+    private DirectoryCursor(List<FileEntry> entries, IOException error) {
+        this.dir = null;
+        this.stream = null;
+        this.it = null;
+        this.listed = entries.iterator();
+        this.filter = null;
+        this.error = error;
+        this.stats = null;
+        this.event = null;
+        advance();
+    }
+
+    /**
+     * @param entries are the entries of a directory listed before (see DirectoryPrefetcher.java)
+     * @return a cursor over them, they are not filtered again
+     */
+    static DirectoryCursor of(List<FileEntry> entries) {
+        return new DirectoryCursor(entries, null);
+    }
+
+    /**
+     * @return a cursor without entries, for a directory that is not read
+     */
+    static DirectoryCursor empty() {
+        return new DirectoryCursor(null, null, null, null, null, null, 0);
+    }
+
+    /**
+     * Read the rest of the directory and close it
+     * @return a cursor over the entries not given yet, with the same error()
+     */
+    DirectoryCursor load() {
+        List<FileEntry> entries = new ArrayList<>();
+        while (hasNext()) {
+            entries.add(next());
+        }
+        close();
+        return new DirectoryCursor(entries, error);
+    }
+
+    /**
+     * @return true if the directory is open (until the close), false for a list of entries
+     */
+    boolean isOpen() {
+        return stream != null;
+    }
+
+    /**
+     * @return why the directory couldn't be read (all of it or the rest after some entries), null if it could
+     */
+    IOException error() {
+        return error;
+    }
+
+    /**
+     * @return true if there is another entry
+     */
+    boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * @return the next entry, then hasNext() tells if it is the last one
+     */
+    FileEntry next() {
+        FileEntry entry = next;
+        advance();
+        return entry;
+    }
+
+    private void advance() {
+        next = null;
+        if (listed != null) {
+            if (listed.hasNext()) next = listed.next();
+            return;
+        }
+        if (it == null) return;
+
+        long start = stats == null ? 0 : System.nanoTime();
+        try {
+            while (next == null && it.hasNext()) {
+                FileEntry entry = FileEntry.read(it.next());
+                nbEntries++;
+                if (entry != null && filter.test(entry)) {
+                    next = entry;
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            // stop at the error like an end of directory
+            failed = true;
+            error = e.getCause();
+        }
+        if (stats != null) {
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (stats != null && dir != null) {
+            stats.listed(event, dir, nbEntries, nanos, failed);
+        }
+        if (stream == null) return;
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // nothing left to read anyway
+        }
+    }
+}
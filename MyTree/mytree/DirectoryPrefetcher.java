@@ -0,0 +1,213 @@
+package mytree;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**************************************************************
+
+List the directories of a walk ahead of it, for the --prefetch mode of
+MyTree on slow (NFS, SSHFS...) mounts.
+
+-Description:
+    On a remote mount, every listing and every stat is a round trip, so a
+    walk waits on the network, not on the CPU. Here the listings of the
+    directories coming next are read at the same time, up to a limit,
+    while the walk still takes them one by one in the tree order (see
+    take()), so the output is the same as without prefetch.
+
+    Each listing that is done schedules the listings of its
+    subdirectories, in front of the ones found before, so the prefetch
+    stays close to where the walk is (depth first). The limit counts the
+    listings started and not taken yet by the walk, so the memory is
+    bounded too, not only the number of requests on the mount.
+
+    The listings run on virtual threads when the JVM has them (Java 21+),
+    a blocked listing then costs almost nothing. On older JVMs they run on
+    a pool of as many threads as the limit.
+
+    To try it on a local disk, -Dmytree.latency=ms adds a delay to every
+    listing, like a remote mount would (see FileEntry.java).
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class DirectoryPrefetcher implements Closeable {
+
+    /**
+     * The filtered entries of a directory and the scope they are in
+     */
+    static final class Listing {
+        // null if the directory is not walked (max depth)
+        final TreeFilter.Scope scope;
+        final List<FileEntry> entries;
+
+        private Listing(TreeFilter.Scope scope, List<FileEntry> entries) {
+            this.scope = scope;
+            this.entries = entries;
+        }
+    }
+
+    private static final class Request {
+        private final Path dir;
+        private final TreeFilter.Scope scope;
+        private final CompletableFuture<Listing> listing = new CompletableFuture<>();
+        // true once it holds one of the slots of the limit, guarded by the prefetcher
+        private boolean started;
+
+        private Request(Path dir, TreeFilter.Scope scope) {
+            this.dir = dir;
+            this.scope = scope;
+        }
+    }
+
+    private final ExecutorService executor;
+    // null for the order of the file system
+    private final EntryOrder order;
+    // everything below is guarded by this
+    private final Map<Path, Request> requests = new HashMap<>();
+    private final Deque<Request> pending = new ArrayDeque<>();
+    private int available;
+    private boolean closed;
+
+    /**
+     * @param root is the root directory
+     * @param scope is the scope of the root
+     * @param order is the order of the entries, null for the order of the file system
+     * @param limit is the max number of listings started and not taken yet
+     */
+    DirectoryPrefetcher(Path root, TreeFilter.Scope scope, EntryOrder order, int limit) {
+        this.executor = newExecutor(limit);
+        this.order = order;
+        this.available = limit;
+        synchronized (this) {
+            Request request = new Request(root, scope);
+            requests.put(root, request);
+            pending.add(request);
+            dispatch();
+        }
+    }
+
+    /**
+     * Virtual threads if the JVM has them, found by reflection so it still compiles with older JDKs
+     */
+    private static ExecutorService newExecutor(int limit) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newFixedThreadPool(limit, runnable -> {
+                Thread thread = new Thread(runnable, "mytree-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Take the listing of a directory, waiting for it if it is not done yet
+     * @param dir is the root or a subdirectory of a listing taken before
+     * @return the listing
+     */
+    Listing take(Path dir) {
+        Request request;
+        boolean inline;
+        synchronized (this) {
+            request = requests.remove(dir);
+            if (request == null) {
+                throw new IllegalStateException("Not a directory of the walk: " + dir);
+            }
+            // the walk needs it now, don't wait for a free slot
+            inline = pending.remove(request);
+            if (inline) {
+                available--;
+                request.started = true;
+            }
+        }
+        if (inline) {
+            list(request);
+        }
+
+        Listing listing = request.listing.join();
+        synchronized (this) {
+            if (request.started) {
+                available++;
+                dispatch();
+            }
+        }
+        return listing;
+    }
+
+    /**
+     * Start the pending listings while there is room, the most recent first
+     */
+    private void dispatch() {
+        while (available > 0 && !pending.isEmpty() && !closed) {
+            Request request = pending.poll();
+            available--;
+            request.started = true;
+            executor.execute(() -> list(request));
+        }
+    }
+
+    private void list(Request request) {
+        try {
+            List<FileEntry> entries = FileEntry.list(request.dir);
+            entries.removeIf(entry -> !request.scope.prints(entry));
+            if (order != null) {
+                order.sort(entries);
+            }
+
+            List<Request> subdirs = new ArrayList<>();
+            for (FileEntry entry : entries) {
+                if (entry.dir) {
+                    subdirs.add(new Request(entry.path, request.scope.enter(entry)));
+                }
+            }
+
+            synchronized (this) {
+                // in reverse so the first subdirectory is the first one started
+                for (int i = subdirs.size() - 1; i >= 0; i--) {
+                    Request subdir = subdirs.get(i);
+                    requests.put(subdir.dir, subdir);
+                    if (subdir.scope == null) {
+                        subdir.listing.complete(new Listing(null, Collections.emptyList()));
+                    } else {
+                        pending.addFirst(subdir);
+                    }
+                }
+            }
+            request.listing.complete(new Listing(request.scope, entries));
+        } catch (RuntimeException | Error e) {
+            request.listing.completeExceptionally(e);
+        }
+
+        synchronized (this) {
+            dispatch();
+        }
+    }
+
+    /**
+     * Stop the listings, the ones running finish in the background
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            pending.clear();
+            requests.clear();
+        }
+        executor.shutdown();
+    }
+}
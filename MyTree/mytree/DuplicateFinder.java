@@ -0,0 +1,243 @@
+package mytree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**************************************************************
+
+Find the files with the same contents, for the --dupes mode of MyTree.
+
+-Description:
+    The files are compared in stages and each stage only keeps the groups
+    that still have more than one file:
+        1. same size, no file is read for this one, so a file with a
+           unique size is never opened, then the hard links to the same
+           file (same fileKey()) are only kept once
+        2. same CRC32C of the first and the last 4 KB (positional reads)
+        3. same SHA-256 of the whole contents, read by memory mapping the
+           file one window at a time
+
+    The stages 2 and 3 hash the files in parallel on a ForkJoinPool.
+
+    Empty files are not reported and the files that are not regular (fifos,
+    devices...) are never read. A link is not a copy: the symbolic links
+    are left out, and of the hard links to a file only the first path is
+    compared, so deleting a reported copy does free its bytes.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class DuplicateFinder {
+
+    private static final int CHUNK_SIZE = 4096;
+    // the windows of the mapping, so files over 2 GB work too
+    private static final long MAP_SIZE = 64L << 20;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param threads is the number of threads hashing the files
+     */
+    DuplicateFinder(int threads) {
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * @param files are the files to compare
+     * @return the groups of files with the same contents, the most wasted bytes first,
+     *         each group sorted by path
+     */
+    List<List<FileEntry>> find(List<FileEntry> files) {
+        try {
+            List<List<FileEntry>> groups = bySize(files);
+            groups = byInode(groups);
+            groups = split(groups, DuplicateFinder::chunksKey);
+            groups = split(groups, DuplicateFinder::contentsKey);
+
+            for (List<FileEntry> group : groups) {
+                group.sort(Comparator.comparing(entry -> entry.path.toString()));
+            }
+            groups.sort(Comparator.comparingLong(DuplicateFinder::wasted).reversed()
+                    .thenComparing(group -> group.get(0).path.toString()));
+            return groups;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @param group is a group of files with the same contents
+     * @return the bytes that would be saved by keeping only one of them
+     */
+    static long wasted(List<FileEntry> group) {
+        return group.get(0).size * (group.size() - 1);
+    }
+
+    private static List<List<FileEntry>> bySize(List<FileEntry> files) {
+        Map<Long, List<FileEntry>> sizes = new HashMap<>();
+        for (FileEntry file : files) {
+            if (file.size > 0 && !file.link) {
+                sizes.computeIfAbsent(file.size, size -> new ArrayList<>()).add(file);
+            }
+        }
+        return withDuplicates(sizes.values());
+    }
+
+    private interface Key {
+        /**
+         * @return the key of the file, null if it can't be read
+         */
+        Object of(FileEntry file);
+    }
+
+    /**
+     * Keep one path of the hard links to the same file, the first one by path
+     */
+    private List<List<FileEntry>> byInode(List<List<FileEntry>> groups) {
+        Object[] keys = keys(groups, DuplicateFinder::inodeKey);
+
+        List<List<FileEntry>> result = new ArrayList<>();
+        int i = 0;
+        for (List<FileEntry> group : groups) {
+            Map<Object, FileEntry> byKey = new HashMap<>();
+            List<FileEntry> files = new ArrayList<>();
+            for (FileEntry file : group) {
+                Object k = keys[i++];
+                if (k == null) {
+                    // no file key on this file system
+                    files.add(file);
+                } else {
+                    byKey.merge(k, file, (a, b) -> a.path.toString().compareTo(b.path.toString()) <= 0 ? a : b);
+                }
+            }
+            files.addAll(byKey.values());
+            if (files.size() > 1) result.add(files);
+        }
+        return result;
+    }
+
+    /**
+     * Split every group by the key of its files, the keys are computed in parallel
+     */
+    private List<List<FileEntry>> split(List<List<FileEntry>> groups, Key key) {
+        Object[] keys = keys(groups, key);
+
+        List<List<FileEntry>> result = new ArrayList<>();
+        int i = 0;
+        for (List<FileEntry> group : groups) {
+            Map<Object, List<FileEntry>> byKey = new HashMap<>();
+            for (FileEntry file : group) {
+                Object k = keys[i++];
+                if (k != null) {
+                    byKey.computeIfAbsent(k, unused -> new ArrayList<>()).add(file);
+                }
+            }
+            result.addAll(withDuplicates(byKey.values()));
+        }
+        return result;
+    }
+
+    /**
+     * @return the key of each file of the groups, in order, computed in parallel
+     */
+    private Object[] keys(List<List<FileEntry>> groups, Key key) {
+        List<FileEntry> files = new ArrayList<>();
+        for (List<FileEntry> group : groups) {
+            files.addAll(group);
+        }
+
+        Object[] keys = new Object[files.size()];
+        pool.submit(() -> IntStream.range(0, keys.length).parallel()
+                .forEach(i -> keys[i] = key.of(files.get(i))))
+                .join();
+        return keys;
+    }
+
+    private static List<List<FileEntry>> withDuplicates(Iterable<List<FileEntry>> groups) {
+        List<List<FileEntry>> duplicates = new ArrayList<>();
+        for (List<FileEntry> group : groups) {
+            if (group.size() > 1) duplicates.add(group);
+        }
+        return duplicates;
+    }
+
+    /**
+     * The file key of the file system (device and inode on Unix), the same for the hard links
+     */
+    private static Object inodeKey(FileEntry file) {
+        try {
+            return Files.readAttributes(file.path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The CRC32C of the first and the last chunk
+     */
+    private static Object chunksKey(FileEntry file) {
+        if (!Files.isRegularFile(file.path, LinkOption.NOFOLLOW_LINKS)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            long head = crc(channel, buffer, 0);
+            long tail = file.size > CHUNK_SIZE ? crc(channel, buffer, file.size - CHUNK_SIZE) : 0;
+            return head << 32 | tail;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static long crc(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) break;
+        }
+        buffer.flip();
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+
+    /**
+     * The SHA-256 of the whole file, also for the ambiguous files of --diff
+     * @return the key, equal for the files with the same contents, null if the file can't be read
+     */
+    static Object contentsKey(FileEntry file) {
+        try (FileChannel channel = FileChannel.open(file.path, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = channel.size();
+
+            for (long position = 0; position < size; position += MAP_SIZE) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position));
+                digest.update(map);
+            }
+            return ByteBuffer.wrap(digest.digest());
+        } catch (IOException e) {
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package mytree;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**************************************************************
+
+The order of the entries of a directory, for the --sort and --dirsfirst
+switches of MyTree.
+
+-Description:
+    Without them, the entries come in the order the file system lists
+    them, which is not the same from one machine to another (on mimi the
+    hidden files came after the others, see log.txt). Sorted, the tree is
+    the same everywhere, so two outputs or two snapshots can be diffed.
+
+    A directory is sorted only once it is listed as a whole, and the
+    comparisons only use what the listing already read: the size and the
+    mtime of every entry come from the one attribute read of FileEntry,
+    and for the names the collation keys are computed once per entry
+    before sorting, not in every comparison (a Collator is slow).
+
+        name  : by name, in the order of the language of the system
+        size  : the largest first (the total size with -s)
+        mtime : the oldest first
+    Ties are broken by name, and --dirsfirst puts the directories before
+    the files, each part in the order of --sort (by name if not given).
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class EntryOrder {
+
+    private final TreeWalker.Sort sort;
+    private final boolean dirsFirst;
+
+    /**
+     * @param sort is the key, NAME if only the directories go first
+     * @param dirsFirst is true to put the directories before the files
+     */
+    EntryOrder(TreeWalker.Sort sort, boolean dirsFirst) {
+        this.sort = sort;
+        this.dirsFirst = dirsFirst;
+    }
+
+    /**
+     * Sort the entries of a directory
+     * @param entries are the entries, they are sorted in place
+     */
+    void sort(List<FileEntry> entries) {
+        int[] order = permutation(entries, null);
+        List<FileEntry> copy = new ArrayList<>(entries);
+        for (int i = 0; i < order.length; i++) {
+            entries.set(i, copy.get(order[i]));
+        }
+    }
+
+    /**
+     * The order of the entries of a directory, without moving them, for the
+     * walks that keep something else next to each entry
+     * @param entries are the entries
+     * @param sizes are the sizes to sort by, e.g. the total sizes of -s, or null for the sizes of the entries
+     * @return the indexes of the entries, in the sorted order
+     */
+    int[] permutation(List<FileEntry> entries, long[] sizes) {
+        int n = entries.size();
+        Integer[] indexes = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            indexes[i] = i;
+        }
+
+        CollationKey[] names = new CollationKey[n];
+        Collator collator = Collator.getInstance();
+        for (int i = 0; i < n; i++) {
+            names[i] = collator.getCollationKey(entries.get(i).name);
+        }
+
+        Comparator<Integer> byName = (a, b) -> {
+            int c = names[a].compareTo(names[b]);
+            // the collator can find two different names equal
+            return c != 0 ? c : entries.get(a).name.compareTo(entries.get(b).name);
+        };
+
+        Comparator<Integer> order;
+        switch (sort) {
+            case SIZE:
+                long[] keys = sizes != null ? sizes : sizes(entries);
+                order = Comparator.comparingLong((Integer i) -> keys[i]).reversed().thenComparing(byName);
+                break;
+            case MTIME:
+                order = Comparator.comparingLong((Integer i) -> entries.get(i).lastModified).thenComparing(byName);
+                break;
+            default:
+                order = byName;
+        }
+        if (dirsFirst) {
+            order = Comparator.comparing((Integer i) -> !entries.get(i).dir).thenComparing(order);
+        }
+
+        Arrays.sort(indexes, order);
+
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++) {
+            permutation[i] = indexes[i];
+        }
+        return permutation;
+    }
+
+    private static long[] sizes(List<FileEntry> entries) {
+        long[] sizes = new long[entries.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = entries.get(i).size;
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,188 @@
+package mytree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**************************************************************
+
+A file or a directory of the tree, with everything MyTree needs to know
+about it read at once.
+
+-Description:
+    The old java.io.File way costs a system call for each isHidden(),
+    isFile(), isDirectory() and so on. Here the attributes of an entry
+    are read only one time when the directory is listed, and the
+    hidden/dir-only/last entry decisions reuse them.
+
+    On Windows the hidden flag is a DOS attribute, so the DOS attributes are
+    read instead of the basic ones (same call, more fields). Everywhere else
+    a hidden file is a file whose name starts with a dot, which is what
+    File.isHidden() does too, so no extra call is needed.
+
+    Symbolic links are followed like java.io.File does. A broken link is
+    still listed with the attributes of the link itself. The link itself is
+    read first (the same one call for the entries that are not links), so
+    an entry knows whether it is a link, -s doesn't walk the links to
+    directories.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class FileEntry {
+
+    // not the "dos" view check, Linux supports it too but through extended attributes
+    private static final boolean WINDOWS = File.separatorChar == '\\';
+    // -Dmytree.latency=ms delays every listing, to try the prefetch of a slow mount on a local disk
+    private static final long LATENCY = Long.getLong("mytree.latency", 0);
+
+    final Path path;
+    final String name;
+    final boolean dir;
+    final boolean hidden;
+    final boolean link;
+    final long size;
+    final long lastModified;
+
+    private FileEntry(Path path, BasicFileAttributes attrs, boolean hidden, boolean link) {
+        this.path = path;
+        Path fileName = path.getFileName();
+        this.name = fileName == null ? path.toString() : fileName.toString();
+        this.dir = attrs.isDirectory();
+        this.hidden = hidden;
+        this.link = link;
+        this.size = attrs.size();
+        this.lastModified = attrs.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * For the entries that are not read from the file system (e.g. from a snapshot)
+     */
+    FileEntry(Path path, String name, boolean dir, boolean hidden, long size, long lastModified) {
+        this(path, name, dir, hidden, false, size, lastModified);
+    }
+
+    private FileEntry(Path path, String name, boolean dir, boolean hidden, boolean link, long size, long lastModified) {
+        this.path = path;
+        this.name = name;
+        this.dir = dir;
+        this.hidden = hidden;
+        this.link = link;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @param size is the new size, e.g. the total size of a directory
+     * @return the same entry with another size
+     */
+    FileEntry withSize(long size) {
+        return new FileEntry(path, name, dir, hidden, link, size, lastModified);
+    }
+
+    /**
+     * @param fullPath is true for the -f switch
+     * @return the name to print
+     */
+    String name(boolean fullPath) {
+        return fullPath ? path.toAbsolutePath().toString() : name;
+    }
+
+    /**
+     * Read the attributes of a path
+     * @param path is the file or the directory
+     * @return the entry, or null if the path doesn't exist anymore
+     */
+    static FileEntry read(Path path) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = readAttributes(path, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+        boolean link = attrs.isSymbolicLink();
+        if (link) {
+            try {
+                attrs = readAttributes(path);
+            } catch (IOException e) {
+                // broken link, the attributes of the link itself
+            }
+        }
+
+        boolean hidden;
+        if (attrs instanceof DosFileAttributes) {
+            hidden = ((DosFileAttributes) attrs).isHidden();
+        } else {
+            Path fileName = path.getFileName();
+            hidden = fileName != null && fileName.toString().startsWith(".");
+        }
+        return new FileEntry(path, attrs, hidden, link);
+    }
+
+    /**
+     * List a directory in the order the file system gives, one attribute read per entry
+     * @param dir is the directory
+     * @return the entries, empty if the directory can't be read
+     */
+    static List<FileEntry> list(Path dir) {
+        WalkStats stats = WalkStats.current();
+        long start = stats == null ? 0 : System.nanoTime();
+        WalkStats.ListingEvent event = stats == null ? null : WalkStats.beginListing();
+        boolean failed = false;
+
+        List<FileEntry> entries = new ArrayList<>();
+        simulateLatency();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                FileEntry entry = read(path);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            // no permission or removed while walking, print what we have
+            failed = true;
+        }
+
+        if (stats != null) {
+            stats.listed(event, dir, entries.size(), System.nanoTime() - start, failed);
+        }
+        return entries;
+    }
+
+    /**
+     * Wait for the latency of -Dmytree.latency before a listing, if any
+     */
+    static void simulateLatency() {
+        if (LATENCY > 0) {
+            try {
+                Thread.sleep(LATENCY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path, LinkOption... options) throws IOException {
+        WalkStats stats = WalkStats.current();
+        try {
+            BasicFileAttributes attrs = WINDOWS
+                    ? Files.readAttributes(path, DosFileAttributes.class, options)
+                    : Files.readAttributes(path, BasicFileAttributes.class, options);
+            if (stats != null) stats.attributesRead(false);
+            return attrs;
+        } catch (IOException e) {
+            if (stats != null) stats.attributesRead(true);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package mytree;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**************************************************************
+
+The rules of one .gitignore file.
+
+-Description:
+    Supports what most .gitignore files use: comments, blank lines,
+    !negation, a trailing / for directories only, patterns anchored by a /
+    (relative to the directory of the .gitignore), *, ?, [...] and **.
+
+    Like git, the last rule of a file that matches wins, and the rules of
+    a .gitignore deeper in the tree win over the ones of its parents (see
+    isIgnored()). The .gitignore files above the root, .git/info/exclude and
+    the global excludes file are not read.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class GitIgnore {
+
+    private final Path dir;
+    private final GitIgnore parent;
+    private final List<Rule> rules;
+
+    private GitIgnore(Path dir, GitIgnore parent, List<Rule> rules) {
+        this.dir = dir;
+        this.parent = parent;
+        this.rules = rules;
+    }
+
+    /**
+     * Read the .gitignore of a directory
+     * @param dir is the directory
+     * @param parent are the rules of the parent directories, can be null
+     * @return the rules, or parent if the directory has no .gitignore
+     */
+    static GitIgnore read(Path dir, GitIgnore parent) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(dir.resolve(".gitignore"), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return parent;
+        } catch (IOException | RuntimeException e) {
+            // unreadable or not UTF-8, ignore it like a missing file
+            return parent;
+        }
+
+        List<Rule> rules = new ArrayList<>();
+        for (String line : lines) {
+            Rule rule = Rule.parse(line);
+            if (rule != null) rules.add(rule);
+        }
+        return rules.isEmpty() ? parent : new GitIgnore(dir, parent, rules);
+    }
+
+    /**
+     * @param path is a file or a directory under the directory of these rules
+     * @param isDir is true if it is a directory
+     * @return true if the path is ignored
+     */
+    boolean isIgnored(Path path, boolean isDir) {
+        for (GitIgnore ignore = this; ignore != null; ignore = ignore.parent) {
+            String relative = ignore.dir.relativize(path).toString().replace('\\', '/');
+
+            for (int i = ignore.rules.size() - 1; i >= 0; i--) {
+                Rule rule = ignore.rules.get(i);
+                if (rule.matches(relative, isDir)) {
+                    return !rule.negated;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class Rule {
+        private final Pattern pattern;
+        private final boolean negated;
+        private final boolean dirOnly;
+
+        private Rule(Pattern pattern, boolean negated, boolean dirOnly) {
+            this.pattern = pattern;
+            this.negated = negated;
+            this.dirOnly = dirOnly;
+        }
+
+        private boolean matches(String relative, boolean isDir) {
+            return (isDir || !dirOnly) && pattern.matcher(relative).matches();
+        }
+
+        /**
+         * @return the rule of a line, null for a comment or a blank line
+         */
+        private static Rule parse(String line) {
+            // trailing spaces are ignored unless escaped
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\')) {
+                end--;
+            }
+            line = line.substring(0, end);
+
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                return null;
+            }
+
+            boolean negated = false;
+            if (line.charAt(0) == '!') {
+                negated = true;
+                line = line.substring(1);
+            } else if (line.startsWith("\\#") || line.startsWith("\\!")) {
+                line = line.substring(1);
+            }
+
+            boolean dirOnly = line.endsWith("/");
+            if (dirOnly) {
+                line = line.substring(0, line.length() - 1);
+            }
+
+            // a slash at the beginning or in the middle anchors the pattern to the directory of the .gitignore
+            boolean anchored = line.indexOf('/') >= 0;
+            if (line.startsWith("/")) {
+                line = line.substring(1);
+            }
+            if (line.isEmpty()) {
+                return null;
+            }
+
+            String regex = (anchored ? "" : "(?:.*/)?") + toRegex(line);
+            return new Rule(Pattern.compile(regex), negated, dirOnly);
+        }
+
+        private static String toRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+
+                if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    boolean slashBefore = i == 0 || glob.charAt(i - 1) == '/';
+                    boolean slashAfter = i + 2 == glob.length() || glob.charAt(i + 2) == '/';
+                    if (slashBefore && slashAfter) {
+                        if (i + 2 == glob.length()) {
+                            // a/** : everything inside
+                            regex.append(".*");
+                        } else {
+                            // **/ : zero or more directories
+                            regex.append("(?:.*/)?");
+                            i++;
+                        }
+                        i++;
+                        continue;
+                    }
+                }
+
+                switch (c) {
+                    case '*':
+                        regex.append("[^/]*");
+                        break;
+                    case '?':
+                        regex.append("[^/]");
+                        break;
+                    case '[':
+                        int close = glob.indexOf(']', i + 2);
+                        if (close < 0) {
+                            regex.append("\\[");
+                        } else {
+                            String set = glob.substring(i + 1, close);
+                            if (set.startsWith("!")) set = "^" + set.substring(1);
+                            regex.append('[').append(set.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                            i = close;
+                        }
+                        break;
+                    case '\\':
+                        if (i + 1 < glob.length()) {
+                            regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                        }
+                        break;
+                    default:
+                        regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return regex.toString();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package mytree;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.List;
+
+/**************************************************************
+
+The tree as one JSON document, like the output of tree -J.
+
+-Example:
+    [
+      {"type":"directory","name":".","contents":[
+        {"type":"file","name":"a"},
+        {"type":"directory","name":"b","contents":[
+        ]}
+      ]},
+      {"type":"report","directories":1,"files":1}
+    ]
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class JsonRenderer implements TreeRenderer {
+
+    private final Writer out;
+    private final boolean dirOnly;
+    private final boolean fullPath;
+    private final boolean sizes;
+
+    // depth of the directory that endDirectory() will close
+    private int openDepth;
+    // for each open directory, is it the last entry of its parent (no comma after it)
+    private final BitSet lastAtDepth = new BitSet();
+    // the mark of the next entry, 0 for none
+    private char mark;
+    // the next directory couldn't be read
+    private boolean error;
+
+    JsonRenderer(Writer out, boolean dirOnly, boolean fullPath, boolean sizes) {
+        this.out = out;
+        this.dirOnly = dirOnly;
+        this.fullPath = fullPath;
+        this.sizes = sizes;
+    }
+
+    @Override
+    public void begin(FileEntry root) throws IOException {
+        out.write("[\n");
+        indent(0);
+        out.write("{\"type\":\"directory\",\"name\":");
+        writeString(out, root.path.toString());
+        writeSize(root);
+        out.write(",\"contents\":[\n");
+    }
+
+    @Override
+    public void file(FileEntry entry, int depth, boolean last) throws IOException {
+        indent(depth);
+        out.write("{\"type\":\"file\",\"name\":");
+        writeString(out, entry.name(fullPath));
+        writeSize(entry);
+        writeMark();
+        out.write(last ? "}\n" : "},\n");
+    }
+
+    @Override
+    public void startDirectory(FileEntry entry, int depth, boolean last) throws IOException {
+        indent(depth);
+        out.write("{\"type\":\"directory\",\"name\":");
+        writeString(out, entry.name(fullPath));
+        writeSize(entry);
+        writeMark();
+        if (error) {
+            out.write(",\"error\":\"opening dir\"");
+            error = false;
+        }
+        out.write(",\"contents\":[\n");
+
+        openDepth = depth;
+        lastAtDepth.set(depth, last);
+    }
+
+    @Override
+    public void endDirectory() throws IOException {
+        indent(openDepth);
+        out.write(lastAtDepth.get(openDepth) ? "]}\n" : "]},\n");
+        openDepth--;
+    }
+
+    @Override
+    public void end(int nbDirs, int nbFiles) throws IOException {
+        indent(0);
+        out.write("]},\n");
+        indent(0);
+        out.write("{\"type\":\"report\",\"directories\":" + nbDirs);
+        if(!dirOnly) out.write(",\"files\":" + nbFiles);
+        out.write("}\n]\n");
+    }
+
+    @Override
+    public void mark(char kind) {
+        mark = kind;
+    }
+
+    @Override
+    public void error() {
+        error = true;
+    }
+
+    private void writeMark() throws IOException {
+        if (mark != 0) {
+            out.write(",\"diff\":\"" + diffName(mark) + "\"");
+            mark = 0;
+        }
+    }
+
+    /**
+     * @param kind is a kind of TreeRenderer.mark()
+     * @return its name in the JSON records
+     */
+    static String diffName(char kind) {
+        return kind == '+' ? "added" : kind == '-' ? "removed" : "changed";
+    }
+
+    /**
+     * The tree document is already closed, so the changes come after it as one 
+     * record per line, like NdjsonRenderer does
+     */
+    @Override
+    public void change(char kind, FileEntry entry) throws IOException {
+        writeChange(out, kind, entry, fullPath);
+    }
+
+    @Override
+    public void largest(List<FileEntry> dirs) throws IOException {
+        writeLargest(out, dirs, fullPath);
+    }
+
+    /**
+     * Write the largest directories of --top as one JSON record per line
+     */
+    static void writeLargest(Writer out, List<FileEntry> dirs, boolean fullPath) throws IOException {
+        for (int i = 0; i < dirs.size(); i++) {
+            FileEntry dir = dirs.get(i);
+            out.write("{\"type\":\"largest\",\"rank\":" + (i + 1) + ",\"path\":");
+            writeString(out, fullPath ? dir.path.toAbsolutePath().toString() : dir.path.toString());
+            out.write(",\"size\":" + dir.size + "}\n");
+        }
+    }
+
+    @Override
+    public void duplicates(List<List<FileEntry>> groups) throws IOException {
+        writeDuplicates(out, groups, fullPath);
+    }
+
+    /**
+     * Write the groups of --dupes as one JSON record per line and a report
+     */
+    static void writeDuplicates(Writer out, List<List<FileEntry>> groups, boolean fullPath) throws IOException {
+        long wasted = 0;
+        for (List<FileEntry> group : groups) {
+            out.write("{\"type\":\"duplicates\",\"size\":" + group.get(0).size + ",\"paths\":[");
+            for (int i = 0; i < group.size(); i++) {
+                if (i > 0) out.write(',');
+                FileEntry file = group.get(i);
+                writeString(out, fullPath ? file.path.toAbsolutePath().toString() : file.path.toString());
+            }
+            out.write("]}\n");
+            wasted += DuplicateFinder.wasted(group);
+        }
+        out.write("{\"type\":\"report\",\"groups\":" + groups.size() + ",\"wasted\":" + wasted + "}\n");
+    }
+
+    /**
+     * Write a change of the watch mode as one JSON record on its own line
+     */
+    static void writeChange(Writer out, char kind, FileEntry entry, boolean fullPath) throws IOException {
+        String change = kind == '+' ? "created" : kind == '-' ? "deleted" : "modified";
+        out.write("{\"type\":\"change\",\"change\":\"" + change + "\",\"entry\":\"");
+        out.write(entry.dir ? "directory" : "file");
+        out.write("\",\"path\":");
+        writeString(out, fullPath ? entry.path.toAbsolutePath().toString() : entry.path.toString());
+        out.write(",\"size\":" + entry.size + ",\"mtime\":" + entry.lastModified + "}\n");
+    }
+
+    private void writeSize(FileEntry entry) throws IOException {
+        if (sizes) out.write(",\"size\":" + entry.size);
+    }
+
+    private void indent(int depth) throws IOException {
+        for (int i = 0; i <= depth; i++) {
+            out.write("  ");
+        }
+    }
+
+    /**
+     * Write a string as a JSON string, with the quotes
+     * @param out is where the string is written
+     * @param s is the string
+     */
+    static void writeString(Writer out, String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,916 @@
+package mytree;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**************************************************************
+
+Print out all the subdirectories and subfiles of a directory in the tree format.
+
+-Description: 
+    Java version of the tree program for when the tree is not installed 
+    and you don't have the admin access to install it (i.e. mcgill cs servers, so
+    I wrote my own tree).
+
+    Support the -a, -d and -f switch and print out the number of subdirectories 
+    and subfiles.
+
+    With -j N the subtrees are listed on a ForkJoinPool of N threads. The output
+    is merged back in order, so it is exactly the same as the sequential one.
+             
+    Each file/directory is stat'ed only once (see FileEntry.java), which matters
+    a lot on network file systems.
+
+    The sequential walk doesn't recurse and doesn't load whole directories: it
+    keeps a stack of open directories, each one read lazily with one entry of 
+    lookahead (see DirectoryCursor.java), so huge or very deep trees don't run
+    out of memory or stack.
+
+    On a slow mount (NFS, SSHFS...), --prefetch N lists up to N directories
+    ahead of the sequential walk at the same time, on virtual threads when 
+    the JVM has them (see DirectoryPrefetcher.java). It hides the round trips
+    of the mount, not the CPU, so N can be much more than the cores. The
+    output is the same.
+
+    The output goes through a renderer (see TreeRenderer.java) and a big
+    buffer instead of a System.out.println for every line. Besides the usual
+    tree format, it can be a JSON document like tree -J or one JSON record 
+    per line (NDJSON), and all of them are written while walking.
+
+    With --cache, the tree is saved in a snapshot (see Snapshot.java) and the 
+    next run with --cache only lists again the directories whose mtime changed.
+    The sizes/mtimes of the files of unchanged directories come from the 
+    snapshot, so use it for the tree, not for up-to-date sizes.
+
+    With -s (or --du), the size of every file and the total size of every 
+    directory are printed next to them, summed bottom-up during a parallel
+    walk, so no separate du is needed. --top N then lists the N largest
+    directories, kept in a heap of N entries while rendering. A symbolic
+    link counts as 0 and a link to a directory is not walked: its target is
+    counted where it is, so nothing is summed twice (or forever with a link
+    loop), and the total is the one of du -sb --apparent-size without the
+    links themselves.
+
+    -I, -P, -L and --gitignore choose what is in the tree before walking it
+    (see TreeFilter.java), so an excluded directory is never listed.
+
+    Without --sort, the entries are in the order the file system gives, which
+    can change from one machine to another. --sort name|size|mtime and 
+    --dirsfirst sort each directory with the attributes already read while
+    listing it (see EntryOrder.java), so sorting costs no extra stat.
+
+    With --dupes, instead of the tree, the files with the same contents are 
+    listed (see DuplicateFinder.java). Only the files with the same size are
+    read, and only the start and the end of them until the whole file is needed.
+
+    The path can also be a .tar archive: its tree is read from the headers
+    of the archive without extracting it (see TarArchive.java), the data of
+    the files is skipped, not read. A snapshot file of --cache works too.
+
+    With --diff old, the tree of old and the tree of the path are walked at
+    the same time and compared (see TreeDiff.java). The tree of the path is
+    printed with only the entries that changed, marked with + (added), 
+    - (removed) or ~ (changed), in the directories they are in. Each one can
+    be a directory, a .tar archive or a snapshot file, so a directory can be
+    compared with an older tarball of itself.
+
+    With --stats, the directory listings and the attribute reads are counted
+    and timed while walking (see WalkStats.java). After the tree, a report
+    with a histogram of the listing times and the slowest directories is
+    printed on the standard error, so the tree itself doesn't change. The
+    same numbers are JFR events for a flight recording.
+
+    With --watch, the tree is walked once into memory and then kept up to date
+    with the WatchService (see TreeWatcher.java): after the tree, every change 
+    is printed as "+ path", "- path" or "~ path" (a change record with --json
+    and --ndjson) until the program is stopped.
+
+    The walk is also a library: TreeWalker gives the entries of the tree as
+    a lazy Iterator or Stream of TreeEntry (see TreeWalker.java), and MyTree
+    itself only exits in main, so it can be called from another program.
+    That is why the classes are in the package mytree (a class of the
+    unnamed package can't be imported), the MyTree of the directory above
+    only runs this one.
+
+    After compilation, to use this program outside of the directory which 
+    contains the .class file, you need to add that directory to the CLASSPATH.
+    
+-Compilation: $ javac MyTree.java
+    (from the directory above, mytree/MyTree.java and the other .java files
+    of this directory are compiled too)
+
+-Execution: $ java MyTree [-switches] [-j N] [--top N] [-I pattern] [-P pattern] [-L level] [--gitignore] [--sort key] [--dirsfirst] [--prefetch N] [--json | --ndjson] [--cache | --watch | --dupes | --diff old [--hash]] [--stats] [path]
+
+-Note: 
+    The directories that you don't have access to are printed as empty directories.
+
+-CLASSPATH:    
+    For the mimi server, enter 
+        $ echo $CLASSPATH 
+    to see your current CLASSPATH.
+   
+    If your CLASSPATH is empty like mine, to add a directory to CLASSPATH for 
+    the current session, enter
+        $ export CLASSPATH=the path of the directory
+    For example, I put my MyTree.class on the desktop, so 
+        $ export CLASSPATH=~/Desktop
+
+    To change the CLASSPATH permenantly, ask google or wait to learn that later in 206.   
+    (I tried and failed so I'll wait)
+
+-Switches: 
+    -a : show hidden files
+    -d : only show directories
+    -f : show full path name
+    -s : show the sizes, the size of a directory is the total of its contents (same as --du)
+
+    -j N : walk the tree with N threads (N >= 1), -s uses all the cores if -j is not given
+    --top N : with -s, list the N largest directories after the tree
+    -I pattern : don't show (or walk) the files and directories whose name matches the pattern
+    -P pattern : only show the files whose name matches the pattern
+    -L level : don't go deeper than level, the sizes of -s only count what is walked
+    --gitignore : don't show (or walk) what the .gitignore files ignore, and .git
+    --sort key : sort the entries of each directory by name, size (largest first) or mtime (oldest first)
+    --dirsfirst : list the directories before the files (by name without --sort)
+    --prefetch N : list up to N directories ahead of the walk, for slow mounts (not with -j, -s, --cache, --watch or --diff)
+    -J or --json : print the tree as JSON
+    --ndjson : print one JSON record per line
+    --cache : reuse and update the snapshot of the tree (-j is ignored)
+    --watch : print the tree, then its changes as they happen (-j is ignored)
+    --dupes : list the duplicate files and the bytes they waste (hashed on all the cores)
+    --diff old : print what changed from the tree of old to the tree of the path (always sorted by name)
+    --hash : with --diff, compare the contents of the files that have the same size but not the same mtime
+    --stats : print where the time of the walk went on the standard error (not with --watch)
+
+    No switches means print all the visible files and directories.
+
+-Path: 
+    If you don't enter anything, the program will print the things in your 
+    current location. A .tar archive or a snapshot file is printed like a
+    directory (not with -s, --cache, --watch or --dupes).
+
+@author Kevin Sun
+@since 2019 Jan 15
+
+**************************************************************/
+
+public class MyTree {
+
+    private FileEntry dir;
+
+    private int nbDirs;
+    private int nbFiles;
+    
+    private boolean all = false;
+    private boolean dirOnly = false;
+    private boolean fullPath = false;
+    private int parallelism = 0; // 0 means the sequential walk
+    private int prefetch = 0; // 0 means no prefetch
+    private Format format = Format.TEXT;
+    private boolean cache = false;
+    private boolean watch = false;
+    private boolean du = false;
+    private int top = 0;
+    private final List<String> includes = new ArrayList<>();
+    private final List<String> excludes = new ArrayList<>();
+    private int maxDepth = 0; // 0 means no limit
+    private boolean gitignore = false;
+    private TreeWalker.Sort sort = null; // null means the order of the file system
+    private boolean dirsFirst = false;
+    private boolean dupes = false;
+    private boolean stats = false;
+    private FileEntry diffBase; // the old tree of --diff, null without --diff
+    private boolean hash = false;
+    private TreeFilter filter;
+
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private enum Format { TEXT, JSON, NDJSON }
+
+    /**
+     * Constructor 
+     * @throws IllegalArgumentException if the input is invalid or the path is not a directory
+     */
+    public MyTree(String[] input) {
+        processInput(input);
+    }
+    
+    /**
+     * A method that gathers information such as the switches and the path from the input.
+     * @param args is a String array 
+     */
+    private void processInput(String[] args) {
+        String path = null;
+        String diffPath = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-j")) {
+                if (i + 1 == args.length) {
+                    invalidInput();
+                }
+                parallelism = getNumber(args[++i]);
+            } else if (args[i].equals("--prefetch")) {
+                if (i + 1 == args.length) {
+                    invalidInput();
+                }
+                prefetch = getNumber(args[++i]);
+            } else if (args[i].equals("--top")) {
+                if (i + 1 == args.length) {
+                    invalidInput();
+                }
+                top = getNumber(args[++i]);
+            } else if (args[i].equals("-I") || args[i].equals("-P") || args[i].equals("-L")) {
+                if (i + 1 == args.length) {
+                    invalidInput();
+                }
+                String option = args[i++];
+                if (option.equals("-I")) {
+                    excludes.add(args[i]);
+                } else if (option.equals("-P")) {
+                    includes.add(args[i]);
+                } else {
+                    maxDepth = getNumber(args[i]);
+                }
+            } else if (args[i].equals("--sort")) {
+                if (i + 1 == args.length) {
+                    invalidInput();
+                }
+                sort = getSort(args[++i]);
+            } else if (args[i].equals("--dirsfirst")) {
+                dirsFirst = true;
+            } else if (args[i].equals("--gitignore")) {
+                gitignore = true;
+            } else if (args[i].equals("--du")) {
+                du = true;
+            } else if (args[i].equals("--json")) {
+                format = Format.JSON;
+            } else if (args[i].equals("--ndjson")) {
+                format = Format.NDJSON;
+            } else if (args[i].equals("--cache")) {
+                cache = true;
+            } else if (args[i].equals("--watch")) {
+                watch = true;
+            } else if (args[i].equals("--dupes")) {
+                dupes = true;
+            } else if (args[i].equals("--stats")) {
+                stats = true;
+            } else if (args[i].equals("--diff")) {
+                if (i + 1 == args.length) {
+                    invalidInput();
+                }
+                diffPath = args[++i];
+            } else if (args[i].equals("--hash")) {
+                hash = true;
+            } else if (args[i].startsWith("--")) {
+                invalidInput();
+            } else if (args[i].length() > 0 && args[i].charAt(0) == '-') {
+                // you can enter invalid switches, idc. :p
+                setSwitches(args[i]);
+            } else if (path == null) {
+                path = args[i];
+            } else {
+                invalidInput();
+            }
+        }
+
+        // the sizes come from the parallel walk only
+        if (du && (cache || watch)) {
+            invalidInput();
+        }
+        if (dupes && (du || cache || watch || dirOnly)) {
+            invalidInput();
+        }
+        // only the sequential walk prefetches
+        if (prefetch > 0 && (parallelism > 0 || du || cache || watch || diffPath != null)) {
+            invalidInput();
+        }
+        // the watch never ends, so there would be no report
+        if (stats && watch) {
+            invalidInput();
+        }
+
+        dir = getDir(path == null ? "." : path);
+        // a stored tree has no directories to list
+        if (!dir.dir && (du || cache || watch || dupes)) {
+            invalidInput();
+        }
+        if (diffPath != null) {
+            if (du || cache || watch || dupes) {
+                invalidInput();
+            }
+            diffBase = getDir(diffPath);
+        } else if (hash) {
+            invalidInput();
+        }
+        EntryOrder order = sort == null && !dirsFirst ? null 
+                : new EntryOrder(sort == null ? TreeWalker.Sort.NAME : sort, dirsFirst);
+        filter = new TreeFilter(all, dirOnly, includes, excludes, maxDepth, gitignore, order);
+    }
+
+    /**
+     * Parse the number given after -j, --prefetch, --top or -L
+     * @param s is the argument after the option
+     * @return the number, at least 1
+     */
+    private int getNumber(String s) {
+        int n = 0;
+        try {
+            n = Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            invalidInput();
+        }
+        if (n < 1) {
+            invalidInput();
+        }
+        return n;
+    }
+
+    /**
+     * Parse the key given after --sort
+     */
+    private TreeWalker.Sort getSort(String s) {
+        switch (s) {
+            case "name":
+                return TreeWalker.Sort.NAME;
+            case "size":
+                return TreeWalker.Sort.SIZE;
+            case "mtime":
+                return TreeWalker.Sort.MTIME;
+            default:
+                invalidInput();
+                return null;
+        }
+    }
+
+    private void invalidInput() {
+        throw new IllegalArgumentException("Invalid Input. Format: $ java MyTree [-switches] [-j N] [--top N] [-I pattern] [-P pattern] [-L level] [--gitignore] [--sort key] [--dirsfirst] [--prefetch N] [--json | --ndjson] [--cache | --watch | --dupes | --diff old [--hash]] [--stats] [path]");
+    }
+    
+    /**
+     * Set switches
+     * @param s is the args[0] from the arg list if it starts with -
+     */
+    private void setSwitches(String s) {
+        all |= s.contains("a");
+        dirOnly |= s.contains("d");
+        fullPath |= s.contains("f");
+        du |= s.contains("s");
+        if (s.contains("J")) format = Format.JSON;
+    }
+
+    /**
+     * Print the file tree and other information
+     * @throws IOException if the output can't be written
+     */
+    public void printTree() throws IOException {
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, stdoutCharset()), OUTPUT_BUFFER_SIZE);
+
+        TreeRenderer renderer = newRenderer(out);
+        WalkStats walkStats = stats ? WalkStats.start() : null;
+
+        if (diffBase != null) {
+            diffTrees(renderer);
+        } else if (!dir.dir) {
+            walkStored(renderer);
+        } else if (dupes) {
+            findDuplicates(renderer);
+        } else if (watch) {
+            watchTree(renderer, out);
+        } else if (cache) {
+            walkCached(renderer);
+        } else if (parallelism > 0 || du) {
+            walkParallel(renderer);
+        } else {
+            walk(renderer);
+        }
+        out.flush();
+
+        if (walkStats != null) {
+            walkStats.report(new OutputStreamWriter(System.err, Charset.defaultCharset()));
+        }
+    }
+
+    private TreeRenderer newRenderer(Writer out) {
+        switch (format) {
+            case JSON:
+                return new JsonRenderer(out, dirOnly, fullPath, du);
+            case NDJSON:
+                return new NdjsonRenderer(out, dirOnly, fullPath);
+            default:
+                return new TextRenderer(out, dirOnly, fullPath, du);
+        }
+    }
+
+    /**
+     * The charset System.out was created with, so the bytes are the same as with System.out.print
+     */
+    private static Charset stdoutCharset() {
+        String encoding = System.getProperty("sun.stdout.encoding");
+        try {
+            if (encoding != null) return Charset.forName(encoding);
+        } catch (RuntimeException e) {
+            // same fallback as System.out
+        }
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * Walk the file tree without recursion (see TreeWalker.java).
+     * @param renderer gets the entries in the tree order
+     */
+    private void walk(TreeRenderer renderer) throws IOException {
+
+        renderer.begin(dir);
+        try (TreeWalker.Walk walk = TreeWalker.walk(filter, dir.path, prefetch)) {
+            int[] counts = render(walk, renderer);
+            nbDirs += counts[0];
+            nbFiles += counts[1];
+        }
+        renderer.end(nbDirs, nbFiles);
+    }
+
+    /**
+     * Render the entries of a tree between begin() and end()
+     * @param entries are the entries in the tree order, like TreeWalker gives them
+     * @param renderer gets the entries
+     * @return the number of directories and the number of files
+     */
+    static int[] render(Iterator<TreeEntry> entries, TreeRenderer renderer) throws IOException {
+        int[] counts = new int[2];
+        // the depth of the deepest directory started and not ended yet
+        int open = 0;
+
+        while (entries.hasNext()) {
+            TreeEntry entry = entries.next();
+
+            for (; open >= entry.depth(); open--) {
+                renderer.endDirectory();
+            }
+
+            if (entry.entry.dir) {
+                counts[0]++;
+                if (entry.error() != null) {
+                    renderer.error();
+                }
+                renderer.startDirectory(entry.entry, entry.depth(), entry.isLast());
+                open = entry.depth();
+            } else {
+                counts[1]++;
+                renderer.file(entry.entry, entry.depth(), entry.isLast());
+            }
+        }
+
+        for (; open > 0; open--) {
+            renderer.endDirectory();
+        }
+        return counts;
+    }
+
+    /**
+     * Walk the file tree (with -j or not) without rendering it, then render the 
+     * duplicate files of the tree.
+     * @param renderer gets the duplicates
+     */
+    private void findDuplicates(TreeRenderer renderer) throws IOException {
+        FileCollector files = new FileCollector();
+        if (parallelism > 0) {
+            walkParallel(files);
+        } else {
+            walk(files);
+        }
+
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        renderer.duplicates(new DuplicateFinder(threads).find(files.files));
+    }
+
+    /**
+     * A renderer that only keeps the files
+     */
+    private static class FileCollector implements TreeRenderer {
+        private final List<FileEntry> files = new ArrayList<>();
+
+        @Override
+        public void file(FileEntry entry, int depth, boolean last) {
+            files.add(entry);
+        }
+
+        @Override
+        public void begin(FileEntry root) {
+        }
+
+        @Override
+        public void startDirectory(FileEntry entry, int depth, boolean last) {
+        }
+
+        @Override
+        public void endDirectory() {
+        }
+
+        @Override
+        public void end(int nbDirs, int nbFiles) {
+        }
+
+        @Override
+        public void mark(char kind) {
+        }
+
+        @Override
+        public void error() {
+        }
+
+        @Override
+        public void change(char kind, FileEntry entry) {
+        }
+
+        @Override
+        public void largest(List<FileEntry> dirs) {
+        }
+
+        @Override
+        public void duplicates(List<List<FileEntry>> groups) {
+        }
+    }
+
+    /**
+     * Walk the file tree with the help of the snapshot of the last run, then
+     * save the new snapshot. Without a usable snapshot it is a full walk.
+     * @param renderer gets the entries in the tree order
+     */
+    private void walkCached(TreeRenderer renderer) throws IOException {
+        long time = System.currentTimeMillis();
+        Snapshot snapshot = Snapshot.load(dir);
+        TreeNode tree = snapshot == null 
+                ? TreeNode.scan(dir, null, 0) 
+                : TreeNode.scan(dir, snapshot.root, snapshot.time);
+
+        renderer.begin(dir);
+        render(tree, renderer, filter.root(dir.path));
+        renderer.end(nbDirs, nbFiles);
+
+        try {
+            Snapshot.save(tree, time);
+        } catch (IOException e) {
+            System.err.println("Cannot save the snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Render the tree stored in a tar archive or a snapshot file
+     * @param renderer gets the entries in the tree order
+     */
+    private void walkStored(TreeRenderer renderer) throws IOException {
+        TreeNode tree;
+        try {
+            tree = TreeNode.read(dir);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read " + dir.path + ": " + e.getMessage(), e);
+        }
+
+        renderer.begin(tree.entry);
+        render(tree, renderer, filter.root(tree.entry.path));
+        renderer.end(nbDirs, nbFiles);
+    }
+
+    /**
+     * Compare the tree of --diff with the tree of the path and render the changes
+     * @param renderer gets the changes in the tree order
+     */
+    private void diffTrees(TreeRenderer renderer) throws IOException {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        TreeDiff.Change root;
+        try {
+            root = new TreeDiff(filter, threads, hash).diff(diffBase, dir);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read a tree: " + e.getMessage(), e);
+        }
+
+        renderer.begin(root.entry);
+        render(root.children, renderer, 1);
+        renderer.end(nbDirs, nbFiles);
+    }
+
+    /**
+     * Render the changes of a directory
+     * @param changes are the changes, sorted by name
+     * @param depth is the depth of the changes
+     */
+    private void render(List<TreeDiff.Change> changes, TreeRenderer renderer, int depth) throws IOException {
+        for (int i = 0; i < changes.size(); i++) {
+            TreeDiff.Change change = changes.get(i);
+            boolean last = i == changes.size() - 1;
+
+            if (change.kind != ' ') {
+                renderer.mark(change.kind);
+            }
+            if (change.entry.dir) {
+                nbDirs++;
+                renderer.startDirectory(change.entry, depth, last);
+                if (change.children != null) {
+                    render(change.children, renderer, depth + 1);
+                }
+                renderer.endDirectory();
+            } else {
+                nbFiles++;
+                renderer.file(change.entry, depth, last);
+            }
+        }
+    }
+
+    /**
+     * Walk the file tree into memory, render it and then render its changes 
+     * until the root directory is removed or the program is stopped.
+     * @param renderer gets the entries in the tree order, then the changes
+     * @param out is flushed after the tree and after each batch of changes
+     */
+    private void watchTree(TreeRenderer renderer, Writer out) throws IOException {
+        TreeWatcher watcher = new TreeWatcher();
+        TreeFilter.Scope scope = filter.root(dir.path);
+        TreeNode tree = watcher.build(dir, scope);
+
+        renderer.begin(dir);
+        render(tree, renderer, scope);
+        renderer.end(nbDirs, nbFiles);
+        out.flush();
+
+        try {
+            watcher.watch(renderer, out);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Render the contents of a directory kept in memory, with the switches entered
+     * @param node is the directory
+     * @param renderer gets the entries in the tree order
+     * @param scope is the scope of the directory, null if it is not walked
+     */
+    private void render(TreeNode node, TreeRenderer renderer, TreeFilter.Scope scope) throws IOException {
+        if (scope == null) {
+            return;
+        }
+
+        List<TreeNode> children = new ArrayList<>(node.children.values());
+        children.removeIf(child -> !scope.prints(child.entry));
+        if (filter.order() != null) {
+            children = sorted(children);
+        }
+
+        for (int i = 0; i < children.size(); i++) {
+            TreeNode child = children.get(i);
+            boolean last = i == children.size() - 1;
+
+            if (child.entry.dir) {
+                nbDirs++;
+                renderer.startDirectory(child.entry, scope.depth(), last);
+                render(child, renderer, scope.enter(child.entry));
+                renderer.endDirectory();
+            } else {
+                nbFiles++;
+                renderer.file(child.entry, scope.depth(), last);
+            }
+        }
+    }
+
+    private List<TreeNode> sorted(List<TreeNode> nodes) {
+        List<FileEntry> entries = new ArrayList<>();
+        for (TreeNode node : nodes) {
+            entries.add(node.entry);
+        }
+
+        List<TreeNode> sorted = new ArrayList<>();
+        for (int i : filter.order().permutation(entries, null)) {
+            sorted.add(nodes.get(i));
+        }
+        return sorted;
+    }
+
+    /**
+     * Walk the file tree with the subtrees listed on a ForkJoinPool.
+     * The tasks only fork, the main thread joins them in the tree order
+     * while rendering, so the output starts before the whole walk is done.
+     * With -s the size of a directory is only known when its whole subtree 
+     * is walked, so then the tasks wait for their subtasks.
+     * @param renderer gets the entries in the tree order
+     */
+    private void walkParallel(TreeRenderer renderer) throws IOException {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        WalkTask root = new WalkTask(dir, filter.root(dir.path));
+        pool.execute(root);
+
+        PriorityQueue<FileEntry> largest = top > 0 ? new PriorityQueue<>(top, BY_SIZE) : null;
+
+        if (du) {
+            root.join();
+            renderer.begin(dir.withSize(root.size));
+        } else {
+            renderer.begin(dir);
+        }
+        root.render(renderer, largest);
+        renderer.end(nbDirs, nbFiles);
+
+        if (largest != null) {
+            List<FileEntry> dirs = new ArrayList<>(largest);
+            dirs.sort(BY_SIZE.reversed());
+            renderer.largest(dirs);
+        }
+
+        pool.shutdown();
+    }
+
+    private static final Comparator<FileEntry> BY_SIZE = Comparator.comparingLong(entry -> entry.size);
+
+    /**
+     * List a directory and fork a task for each of its subdirectories.
+     */
+    private class WalkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileEntry dir;
+        private final TreeFilter.Scope scope; // null if the directory is not walked
+        private List<FileEntry> entries;
+        // the task of each entry that is a directory, null for the files
+        private List<WalkTask> subtasks;
+        // the directory itself, the files and the subdirectories, the printed ones or not (-d)
+        private long size;
+
+        private WalkTask(FileEntry dir, TreeFilter.Scope scope) {
+            this.dir = dir;
+            this.scope = scope;
+        }
+
+        @Override
+        protected void compute() {
+            entries = new ArrayList<>();
+            subtasks = new ArrayList<>();
+            size = dir.size;
+
+            if (scope == null) {
+                return;
+            }
+
+            for (FileEntry entry : FileEntry.list(dir.path)) {
+                if (!scope.keeps(entry)) {
+                    continue;
+                }
+                if (du && entry.link) {
+                    // its target counts where it is, a link to a directory is not walked
+                    entry = entry.withSize(0);
+                }
+
+                if (entry.dir) {
+                    WalkTask task = new WalkTask(entry, du && entry.link ? null : scope.enter(entry));
+                    task.fork();
+                    entries.add(entry);
+                    subtasks.add(task);
+                } else {
+                    // a file not printed with -d still counts in the size of its directory
+                    size += entry.size;
+                    if (scope.prints(entry)) {
+                        entries.add(entry);
+                        subtasks.add(null);
+                    }
+                }
+            }
+
+            if (du) {
+                for (WalkTask task : subtasks) {
+                    if (task != null) {
+                        task.join();
+                        size += task.size;
+                    }
+                }
+            }
+            if (filter.order() != null) {
+                sort();
+            }
+        }
+
+        /**
+         * Sort the entries and their subtasks, by the total sizes with -s
+         */
+        private void sort() {
+            long[] sizes = null;
+            if (du) {
+                sizes = new long[entries.size()];
+                for (int i = 0; i < sizes.length; i++) {
+                    WalkTask task = subtasks.get(i);
+                    sizes[i] = task != null ? task.size : entries.get(i).size;
+                }
+            }
+
+            List<FileEntry> sortedEntries = new ArrayList<>();
+            List<WalkTask> sortedSubtasks = new ArrayList<>();
+            for (int i : filter.order().permutation(entries, sizes)) {
+                sortedEntries.add(entries.get(i));
+                sortedSubtasks.add(subtasks.get(i));
+            }
+            entries = sortedEntries;
+            subtasks = sortedSubtasks;
+        }
+
+        /**
+         * Wait for this task and render its entries and the ones of its subtasks 
+         * in order, counting the directories and files on the way.
+         * @param renderer gets the entries
+         * @param largest is the heap of the largest directories for --top, or null
+         */
+        private void render(TreeRenderer renderer, PriorityQueue<FileEntry> largest) throws IOException {
+            join();
+            int depth = scope == null ? 0 : scope.depth();
+
+            for (int i = 0; i < entries.size(); i++) {
+                FileEntry entry = entries.get(i);
+                WalkTask task = subtasks.get(i);
+                boolean last = i == entries.size() - 1;
+
+                if (task != null) {
+                    nbDirs++;
+                    if (du) {
+                        task.join();
+                        entry = entry.withSize(task.size);
+                        offer(largest, entry);
+                    }
+                    renderer.startDirectory(entry, depth, last);
+                    task.render(renderer, largest);
+                    renderer.endDirectory();
+                } else {
+                    nbFiles++;
+                    renderer.file(entry, depth, last);
+                }
+            }
+
+            entries = null;
+            subtasks = null;
+        }
+    }
+
+    /**
+     * Keep the directory in the heap if it is one of the largest
+     * @param largest is the heap of size --top, the smallest one on top, or null
+     */
+    private void offer(PriorityQueue<FileEntry> largest, FileEntry dir) {
+        if (largest == null) return;
+
+        if (largest.size() < top) {
+            largest.add(dir);
+        } else if (dir.size > largest.peek().size) {
+            largest.poll();
+            largest.add(dir);
+        }
+    }
+
+    /**
+     * Get the directory from the input string 
+     * @param dir is the string that contains the path of the directory
+     * @return the directory, or a tar archive or a snapshot file
+     */
+    private FileEntry getDir(String dir) {
+        FileEntry entry = null;
+        try {
+            entry = FileEntry.read(Paths.get(dir));
+        } catch (InvalidPathException e) {
+            // doesn't exist
+        }
+
+        if (entry == null) {
+            throw new IllegalArgumentException("The directory doesn't exist.");
+        } else if (!entry.dir && !TreeNode.isStored(entry)) {
+            throw new IllegalArgumentException("The input is not a directory, a tar archive or a snapshot.");
+        }
+        return entry;
+    }
+
+    /**
+     * main method, the only place that exits
+     */
+    public static void main(String[] args) {
+        
+        try {
+            MyTree tree = new MyTree(args);
+            tree.printTree();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+        } catch (IOException e) {
+            System.err.println("Cannot write the output: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package mytree;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**************************************************************
+
+Measure the walk and the rendering of MyTree on synthetic trees.
+
+-Description:
+    Each tree shape of TreeFixture.java is built once in a temp directory,
+    then every benchmark is warmed up and runs some measured iterations on
+    it:
+        walk       : TreeWalker only, no -a (what the filter costs)
+        walk -a    : TreeWalker only, everything
+        text       : the text renderer alone, on the entries of a walk done
+                     before, written to a buffered null writer
+        json       : same with the JSON renderer
+        ndjson     : same with the NDJSON renderer
+        walk+text  : both, like $ java MyTree -a
+
+    For each one it prints the entries per second (median of the
+    iterations, with the min and the max) and the bytes allocated per
+    entry by the benchmark thread. An iteration repeats the benchmark until
+    it takes at least 100 ms, so small trees are measured too. The warmup
+    runs iterations for at least --warmup seconds (1 by default), and until
+    two of them in a row take the same time within 5%, so the JIT is done
+    with the code before anything is measured.
+
+    The trees are the same from one run to another (same seed) and the
+    page cache is hot after the warmup, so the walk numbers are the cost of
+    the program and the system calls, not of the disk. For stable numbers,
+    give the JVM a fixed heap and run it alone on the machine:
+        $ java -Xms1g -Xmx1g MyTreeBench
+
+    There is no JMH here (no build to pull it), so this is a plain loop
+    with the usual care: warmup, results kept in a sink so the JIT can't
+    drop the work, and the fixture built before any timing.
+
+-Compilation: $ javac mytree/MyTreeBench.java
+
+-Execution: $ java mytree.MyTreeBench [--shape wide|deep|hidden|mixed] [--scale N] [--seed N] [--warmup seconds] [--iterations N] [path]
+    Without --shape all the shapes are measured. With a path, that
+    directory is measured instead of a synthetic tree.
+
+@author Kevin Sun
+
+**************************************************************/
+
+public class MyTreeBench {
+
+    private static final long MIN_ITERATION_NANOS = 100_000_000L;
+    // the warmup stops there even if the times still move
+    private static final int MAX_WARMUP_FACTOR = 10;
+
+    // everything the benchmarks compute ends up here
+    private static volatile long sink;
+
+    private interface Benchmark {
+        /**
+         * @return the number of entries done
+         */
+        long run() throws IOException;
+    }
+
+    private final List<TreeFixture.Shape> shapes = new ArrayList<>();
+    private int scale = 20000;
+    private long seed = 2019;
+    private int warmup = 1; // seconds
+    private int iterations = 10;
+    private Path path;
+
+    private MyTreeBench(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--") && i + 1 == args.length) {
+                invalidInput();
+            }
+            switch (arg) {
+                case "--shape":
+                    try {
+                        shapes.add(TreeFixture.Shape.valueOf(args[++i].toUpperCase()));
+                    } catch (IllegalArgumentException e) {
+                        invalidInput();
+                    }
+                    break;
+                case "--scale":
+                    scale = getNumber(args[++i]);
+                    break;
+                case "--seed":
+                    seed = getNumber(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = getNumber(args[++i]);
+                    break;
+                case "--iterations":
+                    iterations = getNumber(args[++i]);
+                    break;
+                default:
+                    if (arg.startsWith("-") || path != null) invalidInput();
+                    path = Paths.get(arg);
+            }
+        }
+        if (shapes.isEmpty()) {
+            shapes.addAll(Arrays.asList(TreeFixture.Shape.values()));
+        }
+    }
+
+    private static int getNumber(String s) {
+        try {
+            int n = Integer.parseInt(s);
+            if (n >= 1) return n;
+        } catch (NumberFormatException e) {
+            // invalid
+        }
+        invalidInput();
+        return 0;
+    }
+
+    private static void invalidInput() {
+        throw new IllegalArgumentException("Invalid Input. Format: $ java mytree.MyTreeBench [--shape wide|deep|hidden|mixed] [--scale N] [--seed N] [--warmup seconds] [--iterations N] [path]");
+    }
+
+    private void run() throws IOException {
+        System.out.printf("%s %s, warmup %d s, iterations %d%n", System.getProperty("java.vm.name"),
+                System.getProperty("java.version"), warmup, iterations);
+
+        if (path != null) {
+            measure(path.toString(), path);
+            return;
+        }
+
+        for (TreeFixture.Shape shape : shapes) {
+            Path root = TreeFixture.create(shape, scale, seed);
+            try {
+                measure(shape.name().toLowerCase() + " (scale " + scale + ", seed " + seed + ")", root);
+            } finally {
+                TreeFixture.delete(root);
+            }
+        }
+    }
+
+    private void measure(String title, Path root) throws IOException {
+        FileEntry rootEntry = FileEntry.read(root);
+        List<TreeEntry> entries = collect(root);
+
+        System.out.println();
+        System.out.println(title + ": " + entries.size() + " entries");
+        System.out.printf("  %-10s %14s %14s %14s %12s%n", "", "entries/s", "min", "max", "B/entry");
+
+        report("walk", () -> walk(root, false));
+        report("walk -a", () -> walk(root, true));
+        report("text", () -> render(rootEntry, entries, new TextRenderer(nullWriter(), false, false, false)));
+        report("json", () -> render(rootEntry, entries, new JsonRenderer(nullWriter(), false, false, false)));
+        report("ndjson", () -> render(rootEntry, entries, new NdjsonRenderer(nullWriter(), false, false)));
+        report("walk+text", () -> {
+            try (TreeWalker.Walk walk = new TreeWalker(root).showHidden(true).iterator()) {
+                return render(rootEntry, walk, new TextRenderer(nullWriter(), false, false, false));
+            }
+        });
+    }
+
+    private static List<TreeEntry> collect(Path root) throws IOException {
+        List<TreeEntry> entries = new ArrayList<>();
+        try (TreeWalker.Walk walk = new TreeWalker(root).showHidden(true).iterator()) {
+            walk.forEachRemaining(entries::add);
+        }
+        return entries;
+    }
+
+    private static long walk(Path root, boolean all) throws IOException {
+        long count = 0;
+        long size = 0;
+        try (TreeWalker.Walk walk = new TreeWalker(root).showHidden(all).iterator()) {
+            while (walk.hasNext()) {
+                size += walk.next().size();
+                count++;
+            }
+        }
+        sink += size;
+        return count;
+    }
+
+    private static long render(FileEntry root, Iterable<TreeEntry> entries, TreeRenderer renderer) throws IOException {
+        return render(root, entries.iterator(), renderer);
+    }
+
+    private static long render(FileEntry root, Iterator<TreeEntry> entries, TreeRenderer renderer) throws IOException {
+        renderer.begin(root);
+        int[] counts = MyTree.render(entries, renderer);
+        renderer.end(counts[0], counts[1]);
+        return counts[0] + counts[1];
+    }
+
+    /**
+     * Same buffer as MyTree, the cost of the writes to System.out is not measured
+     */
+    private static Writer nullWriter() {
+        return new BufferedWriter(Writer.nullWriter(), 1 << 16);
+    }
+
+    private void report(String name, Benchmark benchmark) throws IOException {
+        // how many runs make an iteration long enough, then more iterations until the JIT is done with
+        // the code: at least the warmup time, and until two iterations in a row take about the same time
+        int repeat = 1;
+        long start = System.nanoTime();
+        long previous = 0;
+        while (true) {
+            long time = System.nanoTime();
+            for (int r = 0; r < repeat; r++) {
+                sink += benchmark.run();
+            }
+            time = System.nanoTime() - time;
+            if (time < MIN_ITERATION_NANOS && repeat < 1 << 20) {
+                repeat = (int) Math.min(1 << 20, (long) repeat * MIN_ITERATION_NANOS / Math.max(1, time) + 1);
+                previous = 0;
+                continue;
+            }
+            long elapsed = System.nanoTime() - start;
+            boolean stable = Math.abs(time - previous) < previous / 20;
+            if (elapsed >= warmup * 1_000_000_000L && stable || elapsed >= warmup * MAX_WARMUP_FACTOR * 1_000_000_000L) {
+                break;
+            }
+            previous = time;
+        }
+
+        double[] rates = new double[iterations];
+        long entries = 0;
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytes = allocatedBytes();
+            long time = System.nanoTime();
+            long count = 0;
+            for (int r = 0; r < repeat; r++) {
+                count += benchmark.run();
+            }
+            time = System.nanoTime() - time;
+            allocated += allocatedBytes() - bytes;
+            entries += count;
+            rates[i] = count * 1e9 / time;
+        }
+        sink += entries;
+
+        Arrays.sort(rates);
+        double median = rates.length % 2 == 1 ? rates[rates.length / 2]
+                : (rates[rates.length / 2 - 1] + rates[rates.length / 2]) / 2;
+        String perEntry = allocatedBytes() < 0 ? "n/a" : String.format("%.1f", (double) allocated / entries);
+        System.out.printf("  %-10s %14.0f %14.0f %14.0f %12s%n", name, median, rates[0], rates[rates.length - 1], perEntry);
+    }
+
+    /**
+     * @return the bytes allocated by this thread so far, negative if the JVM can't tell
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * main method
+     */
+    public static void main(String[] args) {
+        try {
+            new MyTreeBench(args).run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+        } catch (IOException e) {
+            System.err.println("Cannot build or walk the tree: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+}
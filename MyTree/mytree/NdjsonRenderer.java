@@ -0,0 +1,109 @@
+package mytree;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**************************************************************
+
+One JSON record per line and per entry, for the programs that index
+the files rather than look at the tree.
+
+-Example:
+    {"type":"directory","name":".","path":".","depth":0,"size":4096,"mtime":1547510400000}
+    {"type":"file","name":"a","path":"./a","depth":1,"size":12,"mtime":1547510400000}
+    {"type":"report","directories":0,"files":1}
+
+    mtime is in milliseconds since 1970. With -s, the size of a directory
+    is its total size.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class NdjsonRenderer implements TreeRenderer {
+
+    private final Writer out;
+    private final boolean dirOnly;
+    private final boolean fullPath;
+    // the mark of the next entry, 0 for none
+    private char mark;
+    // the next directory couldn't be read
+    private boolean error;
+
+    NdjsonRenderer(Writer out, boolean dirOnly, boolean fullPath) {
+        this.out = out;
+        this.dirOnly = dirOnly;
+        this.fullPath = fullPath;
+    }
+
+    @Override
+    public void begin(FileEntry root) throws IOException {
+        record("directory", root.path.toString(), root, 0);
+    }
+
+    @Override
+    public void file(FileEntry entry, int depth, boolean last) throws IOException {
+        record("file", entry.name(fullPath), entry, depth);
+    }
+
+    @Override
+    public void startDirectory(FileEntry entry, int depth, boolean last) throws IOException {
+        record("directory", entry.name(fullPath), entry, depth);
+    }
+
+    @Override
+    public void endDirectory() {
+    }
+
+    @Override
+    public void end(int nbDirs, int nbFiles) throws IOException {
+        out.write("{\"type\":\"report\",\"directories\":" + nbDirs);
+        if(!dirOnly) out.write(",\"files\":" + nbFiles);
+        out.write("}\n");
+    }
+
+    @Override
+    public void mark(char kind) {
+        mark = kind;
+    }
+
+    @Override
+    public void error() {
+        error = true;
+    }
+
+    @Override
+    public void change(char kind, FileEntry entry) throws IOException {
+        JsonRenderer.writeChange(out, kind, entry, fullPath);
+    }
+
+    @Override
+    public void largest(List<FileEntry> dirs) throws IOException {
+        JsonRenderer.writeLargest(out, dirs, fullPath);
+    }
+
+    @Override
+    public void duplicates(List<List<FileEntry>> groups) throws IOException {
+        JsonRenderer.writeDuplicates(out, groups, fullPath);
+    }
+
+    private void record(String type, String name, FileEntry entry, int depth) throws IOException {
+        out.write("{\"type\":\"");
+        out.write(type);
+        out.write("\",\"name\":");
+        JsonRenderer.writeString(out, name);
+        out.write(",\"path\":");
+        JsonRenderer.writeString(out, entry.path.toString());
+        out.write(",\"depth\":" + depth + ",\"size\":" + entry.size + ",\"mtime\":" + entry.lastModified);
+        if (mark != 0) {
+            out.write(",\"diff\":\"" + JsonRenderer.diffName(mark) + "\"");
+            mark = 0;
+        }
+        if (error) {
+            out.write(",\"error\":\"opening dir\"");
+            error = false;
+        }
+        out.write("}\n");
+    }
+}
@@ -0,0 +1,237 @@
+package mytree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**************************************************************
+
+Save and load the tree of a directory in a small binary file, so the
+next run only lists the directories that changed (see TreeNode.scan()).
+
+-Description:
+    There is one snapshot per root directory, in ~/.mytree/, named after
+    a hash of the absolute path of the root.
+
+    Anything wrong with a snapshot (missing, another version, another root,
+    truncated...) makes load() return null, and MyTree just does a full walk.
+    A snapshot file can also be given as the path to print or to diff (see
+    read()), then the paths of its entries are the ones of its root.
+    A snapshot is written to a temporary file first and then moved, so an
+    interrupted run never leaves half a snapshot behind.
+
+-Format (version 1):
+    int     magic "MYTR"
+    short   version
+    long    time the tree was taken (ms)
+    UTF     absolute path of the root
+    node    the root
+
+    node:
+    byte    flags (1 = directory, 2 = hidden)
+    UTF     name
+    varlong size
+    varlong mtime (ms)
+    varint  number of children, then the children (directories only)
+
+    varlong/varint are 7 bits per byte, the high bit means more bytes follow.
+    Negative values (mtimes before 1970) are zigzag encoded.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class Snapshot {
+
+    private static final int MAGIC = 0x4D595452; // "MYTR"
+    private static final short VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int DIR = 1;
+    private static final int HIDDEN = 2;
+
+    final TreeNode root;
+    final long time;
+
+    private Snapshot(TreeNode root, long time) {
+        this.root = root;
+        this.time = time;
+    }
+
+    /**
+     * @param root is the root directory
+     * @return the snapshot file of that root
+     */
+    static Path fileOf(Path root) {
+        String absolute = root.toAbsolutePath().normalize().toString();
+        return Paths.get(System.getProperty("user.home"), ".mytree", hash(absolute) + ".snapshot");
+    }
+
+    /**
+     * Load the snapshot of a root directory
+     * @param root is the root directory
+     * @return the snapshot, or null if there is no usable snapshot
+     */
+    static Snapshot load(FileEntry root) {
+        Path file = fileOf(root.path);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try {
+            return read(file, root.path);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param entry is a file
+     * @return true if it looks like a snapshot file, from its name
+     */
+    static boolean isSnapshot(FileEntry entry) {
+        return !entry.dir && entry.name.endsWith(".snapshot");
+    }
+
+    /**
+     * Read any snapshot file
+     * @param file is the snapshot file
+     * @return the snapshot, its root has the path saved in the file
+     * @throws IOException if the file can't be read or is not a snapshot
+     */
+    static Snapshot read(Path file) throws IOException {
+        try {
+            return read(file, null);
+        } catch (RuntimeException e) {
+            throw new IOException("not a snapshot", e);
+        }
+    }
+
+    /**
+     * @param root is the root the snapshot must be of, null for any root
+     * @return the snapshot, or null if it is not of that root
+     */
+    private static Snapshot read(Path file, Path root) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                throw new IOException("not a snapshot of this version");
+            }
+            long time = in.readLong();
+            String path = in.readUTF();
+            if (root != null && !path.equals(root.toAbsolutePath().normalize().toString())) {
+                return null;
+            }
+            TreeNode node = readNode(in, null, root != null ? root : Paths.get(path));
+            if (node.children == null) {
+                throw new IOException("not a snapshot of a directory");
+            }
+            return new Snapshot(node, time);
+        }
+    }
+
+    /**
+     * Save the tree of a root directory
+     * @param tree is the tree
+     * @param time is when the walk of the tree started
+     */
+    static void save(TreeNode tree, long time) throws IOException {
+        Path file = fileOf(tree.entry.path);
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), "snapshot", ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeLong(time);
+                out.writeUTF(tree.entry.path.toAbsolutePath().normalize().toString());
+                writeNode(out, tree);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeNode(DataOutputStream out, TreeNode node) throws IOException {
+        FileEntry entry = node.entry;
+        out.writeByte((entry.dir ? DIR : 0) | (entry.hidden ? HIDDEN : 0));
+        out.writeUTF(entry.name);
+        writeVarLong(out, entry.size);
+        writeVarLong(out, entry.lastModified);
+
+        if (node.children != null) {
+            writeVarLong(out, node.children.size());
+            for (TreeNode child : node.children.values()) {
+                writeNode(out, child);
+            }
+        }
+    }
+
+    /**
+     * @param parent is the path of the parent directory, null for the root
+     * @param root is the path of the root
+     */
+    private static TreeNode readNode(DataInputStream in, Path parent, Path root) throws IOException {
+        int flags = in.readUnsignedByte();
+        String name = in.readUTF();
+        long size = readVarLong(in);
+        long lastModified = readVarLong(in);
+        boolean dir = (flags & DIR) != 0;
+        Path path = parent == null ? root : parent.resolve(name);
+
+        TreeNode node = new TreeNode(new FileEntry(path, name, dir, (flags & HIDDEN) != 0, size, lastModified));
+
+        if (dir) {
+            long count = readVarLong(in);
+            for (long i = 0; i < count; i++) {
+                node.add(readNode(in, path, root));
+            }
+        }
+        return node;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IOException("Bad varlong");
+    }
+
+    private static String hash(String s) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package mytree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**************************************************************
+
+The tree of a tar archive, read from the headers only.
+
+-Description:
+    A tar is a list of 512 bytes headers, each one followed by the data of
+    the file rounded up to 512 bytes. The size is in the header, so the
+    data is skipped by moving the position of the FileChannel and only the
+    headers are read: a multi-gigabyte archive costs one read per entry
+    and nothing is extracted.
+
+    Supports the ustar, GNU and pax formats: the ustar prefix, the GNU long
+    names (L) and the pax path, size and mtime records (x) for long names
+    and sizes over 8 GB. Compressed archives (.tar.gz...) can't be skipped
+    through, so they are not supported.
+
+    The entries of an archive are not in the tree order and the parent
+    directories don't always have their own header, so the tree is built
+    in memory (see TreeNode.java), the missing directories get the mtime
+    of the archive. When a path is in the archive twice, the last one wins,
+    like when extracting. An archive ends with zero blocks, one that ends
+    before them (or in the data of an entry) is truncated and an error,
+    not a smaller tree.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class TarArchive {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private TarArchive() {
+    }
+
+    /**
+     * @param entry is a file
+     * @return true if it looks like a tar archive, from its name
+     */
+    static boolean isArchive(FileEntry entry) {
+        return !entry.dir && entry.name.toLowerCase().endsWith(".tar");
+    }
+
+    /**
+     * Read the tree of an archive
+     * @param archive is the archive, the paths of the entries are under its path
+     * @return the tree, its root is the archive as a directory
+     * @throws IOException if the archive can't be read or is not a tar
+     */
+    static TreeNode read(FileEntry archive) throws IOException {
+        TreeNode root = new TreeNode(new FileEntry(archive.path, archive.name, true, archive.hidden,
+                archive.size, archive.lastModified));
+        Map<String, TreeNode> nodes = new HashMap<>();
+        nodes.put("", root);
+
+        try (FileChannel channel = FileChannel.open(archive.path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_SIZE);
+            long position = 0;
+            // from the GNU long name and the pax headers, for the next entry
+            String longName = null;
+            Map<String, String> pax = new HashMap<>();
+
+            while (true) {
+                if (!read(channel, header, position)) {
+                    throw new IOException("truncated tar archive");
+                }
+                byte[] block = header.array();
+                if (isZero(block)) {
+                    break;
+                }
+                if (!checksumMatches(block)) {
+                    throw new IOException("not a tar archive (bad header at " + position + ")");
+                }
+
+                long size = parseNumber(block, 124, 12);
+                char type = (char) block[156];
+                long dataPosition = position + BLOCK_SIZE;
+                position = dataPosition + (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+
+                if (type == 'L') {
+                    longName = readString(channel, dataPosition, size);
+                    continue;
+                } else if (type == 'x') {
+                    parsePax(readString(channel, dataPosition, size), pax);
+                    continue;
+                } else if (type == 'g' || type == 'K') {
+                    // global pax headers and long link names don't change the tree
+                    continue;
+                }
+
+                String name = longName != null ? longName : headerName(block);
+                name = pax.getOrDefault("path", name);
+                long mtime = parseNumber(block, 136, 12) * 1000;
+                if (pax.containsKey("mtime")) {
+                    mtime = (long) (Double.parseDouble(pax.get("mtime")) * 1000);
+                }
+                if (pax.containsKey("size")) {
+                    // pax sizes are for the files over 8 GB, the data follows the header all the same
+                    size = Long.parseLong(pax.get("size"));
+                    position = dataPosition + (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+                }
+                longName = null;
+                pax.clear();
+
+                boolean dir = type == '5' || name.endsWith("/");
+                add(nodes, archive, name, dir, dir ? 0 : size, mtime);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("not a tar archive (bad pax header)", e);
+        }
+        return root;
+    }
+
+    /**
+     * Read a block, false at the end of the file
+     */
+    private static boolean read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readString(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("not a tar archive (header of " + size + " bytes)");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        if (!read(channel, buffer, position)) {
+            throw new IOException("truncated tar archive");
+        }
+        return cString(buffer.array(), 0, buffer.capacity());
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * The checksum is the sum of the bytes of the header, with the checksum itself as spaces
+     */
+    private static boolean checksumMatches(byte[] block) {
+        long expected;
+        try {
+            expected = parseNumber(block, 148, 8);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        long unsigned = 0;
+        long signed = 0; // some old tars summed signed bytes
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            byte b = i >= 148 && i < 156 ? (byte) ' ' : block[i];
+            unsigned += b & 0xff;
+            signed += b;
+        }
+        return expected == unsigned || expected == signed;
+    }
+
+    /**
+     * A numeric field: octal text, or big-endian binary when the first bit is set (GNU, for big numbers)
+     */
+    private static long parseNumber(byte[] block, int offset, int length) {
+        if ((block[offset] & 0x80) != 0) {
+            long value = block[offset] & 0x7f;
+            for (int i = 1; i < length; i++) {
+                value = value << 8 | (block[offset + i] & 0xff);
+            }
+            return value;
+        }
+
+        String text = cString(block, offset, length).trim();
+        return text.isEmpty() ? 0 : Long.parseLong(text, 8);
+    }
+
+    private static String headerName(byte[] block) {
+        String name = cString(block, 0, 100);
+        boolean ustar = cString(block, 257, 5).equals("ustar");
+        String prefix = ustar ? cString(block, 345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static String cString(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The records of a pax header are "length key=value\n"
+     */
+    private static void parsePax(String records, Map<String, String> pax) {
+        int i = 0;
+        byte[] bytes = records.getBytes(StandardCharsets.UTF_8);
+        while (i < bytes.length) {
+            int space = i;
+            while (space < bytes.length && bytes[space] != ' ') space++;
+            if (space == bytes.length) break;
+
+            // the length counts bytes, not chars
+            int length = Integer.parseInt(new String(bytes, i, space - i, StandardCharsets.US_ASCII));
+            if (length <= space - i || i + length > bytes.length) break;
+
+            String record = new String(bytes, space + 1, i + length - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                pax.put(record.substring(0, equals), record.substring(equals + 1));
+            }
+            i += length;
+        }
+    }
+
+    /**
+     * Add an entry of the archive, and its parent directories if they are not there yet
+     * @param nodes are the nodes by their path in the archive, "" for the root
+     * @param name is the path in the archive
+     */
+    private static void add(Map<String, TreeNode> nodes, FileEntry archive, String name, boolean dir,
+            long size, long mtime) {
+        TreeNode parent = nodes.get("");
+        StringBuilder path = new StringBuilder();
+
+        String[] names = name.split("/");
+        int last = names.length - 1;
+        while (last >= 0 && (names[last].isEmpty() || names[last].equals("."))) {
+            last--;
+        }
+
+        for (int i = 0; i <= last; i++) {
+            if (names[i].isEmpty() || names[i].equals(".")) {
+                continue;
+            }
+            if (path.length() > 0) path.append('/');
+            path.append(names[i]);
+
+            String key = path.toString();
+            TreeNode node = nodes.get(key);
+            boolean isDir = i < last || dir;
+            FileEntry entry;
+            try {
+                entry = i < last
+                        ? new FileEntry(archive.path.resolve(key), names[i], true, names[i].startsWith("."), 0, archive.lastModified)
+                        : new FileEntry(archive.path.resolve(key), names[i], dir, names[i].startsWith("."), size, mtime);
+            } catch (InvalidPathException e) {
+                // a name this system can't have, e.g. with a ':' on Windows
+                return;
+            }
+
+            if (node == null) {
+                node = new TreeNode(entry);
+                nodes.put(key, node);
+                parent.add(node);
+            } else if (i == last && node.entry.dir == isDir) {
+                node.entry = entry;
+            } else if (!node.entry.dir) {
+                // a file in the way of a directory, the archive is odd, keep the file
+                return;
+            }
+            parent = node;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package mytree;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**************************************************************
+
+The tree format with the box drawings, what MyTree always printed.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class TextRenderer implements TreeRenderer {
+
+    private static final String TAB = "   ";
+    private static final String VERTICAL_LINE = "\u2502  ";
+    private static final String BOX_DRAWING_T = "\u251c\u2500\u2500 ";
+    private static final String BOX_DRAWING_L = "\u2514\u2500\u2500 ";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer out;
+    private final boolean dirOnly;
+    private final boolean fullPath;
+    private final boolean sizes;
+
+    // the vertical lines and tabs, every level adds a TAB or a VERTICAL_LINE 
+    // of the same length, so the offset of a depth is always depth - 1 of them
+    private final StringBuilder offset = new StringBuilder();
+    // the mark of the next line, 0 for none
+    private char mark;
+    // the next line is a directory that couldn't be read
+    private boolean error;
+
+    TextRenderer(Writer out, boolean dirOnly, boolean fullPath, boolean sizes) {
+        this.out = out;
+        this.dirOnly = dirOnly;
+        this.fullPath = fullPath;
+        this.sizes = sizes;
+    }
+
+    @Override
+    public void begin(FileEntry root) throws IOException {
+        if (sizes) writeSize(root);
+        out.write(root.path.toString());
+        out.write(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void file(FileEntry entry, int depth, boolean last) throws IOException {
+        line(entry, depth, last);
+    }
+
+    @Override
+    public void startDirectory(FileEntry entry, int depth, boolean last) throws IOException {
+        line(entry, depth, last);
+        offset.append(last ? TAB : VERTICAL_LINE);
+    }
+
+    @Override
+    public void endDirectory() {
+    }
+
+    @Override
+    public void end(int nbDirs, int nbFiles) throws IOException {
+        out.write(LINE_SEPARATOR);
+        out.write(nbDirs + " directories" + LINE_SEPARATOR);
+        if(!dirOnly) out.write(nbFiles + " files" + LINE_SEPARATOR);
+    }
+
+    @Override
+    public void mark(char kind) {
+        mark = kind;
+    }
+
+    @Override
+    public void error() {
+        error = true;
+    }
+
+    @Override
+    public void change(char kind, FileEntry entry) throws IOException {
+        out.write(kind);
+        out.write(' ');
+        out.write(fullPath ? entry.path.toAbsolutePath().toString() : entry.path.toString());
+        out.write(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void largest(List<FileEntry> dirs) throws IOException {
+        out.write(LINE_SEPARATOR);
+        out.write("largest directories" + LINE_SEPARATOR);
+        for (FileEntry dir : dirs) {
+            writeSize(dir);
+            out.write(fullPath ? dir.path.toAbsolutePath().toString() : dir.path.toString());
+            out.write(LINE_SEPARATOR);
+        }
+    }
+
+    @Override
+    public void duplicates(List<List<FileEntry>> groups) throws IOException {
+        long wasted = 0;
+        for (List<FileEntry> group : groups) {
+            writeSize(group.get(0));
+            out.write(group.size() + " copies" + LINE_SEPARATOR);
+            for (FileEntry file : group) {
+                out.write(TAB);
+                out.write(fullPath ? file.path.toAbsolutePath().toString() : file.path.toString());
+                out.write(LINE_SEPARATOR);
+            }
+            out.write(LINE_SEPARATOR);
+            wasted += DuplicateFinder.wasted(group);
+        }
+        out.write(groups.size() + " groups of duplicates, " + wasted + " bytes wasted" + LINE_SEPARATOR);
+    }
+
+    /**
+     * The size in bytes, like tree -s: [       4096]
+     */
+    private void writeSize(FileEntry entry) throws IOException {
+        String size = Long.toString(entry.size);
+        out.write('[');
+        for (int i = size.length(); i < 11; i++) {
+            out.write(' ');
+        }
+        out.write(size);
+        out.write("]  ");
+    }
+
+    private void line(FileEntry entry, int depth, boolean last) throws IOException {
+        offset.setLength((depth - 1) * TAB.length());
+        out.append(offset);
+        out.write(last ? BOX_DRAWING_L : BOX_DRAWING_T);
+        if (mark != 0) {
+            out.write(mark);
+            out.write(' ');
+            mark = 0;
+        }
+        if (sizes) writeSize(entry);
+        out.write(entry.name(fullPath));
+        if (error) {
+            // like tree
+            out.write("  [error opening dir]");
+            error = false;
+        }
+        out.write(LINE_SEPARATOR);
+    }
+}
@@ -0,0 +1,264 @@
+package mytree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**************************************************************
+
+Compare two trees, for the --diff mode of MyTree.
+
+-Description:
+    Both trees are walked at the same time on one ForkJoinPool, each
+    subdirectory in its own task, into memory (see TreeNode.java), with
+    the switches applied while walking. A tree can also be read from a tar
+    archive or a snapshot file, then the switches are applied after.
+
+    Then the entries are matched by name, directory by directory:
+        - only in the old tree         : removed (-)
+        - only in the new tree         : added (+)
+        - a file and a directory       : changed (~)
+        - two files of different sizes : changed (~)
+        - two files of the same size and mtime : the same
+        - two files of the same size and another mtime : ambiguous, changed
+          unless --hash is given, then the contents are compared (SHA-256,
+          in parallel) and they are the same if the contents are
+    An added or removed directory is one change, its contents are not
+    listed. The directories of the new tree with no change inside are left
+    out, the other ones are kept so the changes are shown in their tree.
+
+    The entries of a directory are sorted by name, so the result doesn't
+    depend on the order the file systems list them.
+
+    A tar archive keeps the mtimes in seconds, so when one of the trees is
+    an archive the mtimes are compared to the second.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class TreeDiff {
+
+    /**
+     * An entry of the diff tree
+     */
+    static final class Change {
+        // '+', '-', '~', or ' ' for a directory only kept for the changes inside it
+        char kind;
+        // the entry of the new tree, or of the old one if it is removed
+        final FileEntry entry;
+        // the changes inside a ' ' directory, null otherwise
+        final List<Change> children;
+        // the entry of the old tree of an ambiguous file, until it is hashed
+        private FileEntry old;
+
+        private Change(char kind, FileEntry entry, List<Change> children) {
+            this.kind = kind;
+            this.entry = entry;
+            this.children = children;
+        }
+    }
+
+    // the kind of an ambiguous file before and after it is hashed
+    private static final char AMBIGUOUS = '?';
+    private static final char SAME = '=';
+
+    private final TreeFilter filter;
+    private final ForkJoinPool pool;
+    private final boolean hash;
+    private long mtimeResolution = 1;
+    private final List<Change> ambiguous = new ArrayList<>();
+
+    /**
+     * @param filter is the filter of the switches, for both trees
+     * @param threads is the number of threads walking and hashing
+     * @param hash is true to compare the contents of the ambiguous files
+     */
+    TreeDiff(TreeFilter filter, int threads, boolean hash) {
+        this.filter = filter;
+        this.pool = new ForkJoinPool(threads);
+        this.hash = hash;
+    }
+
+    /**
+     * Compare two trees
+     * @param oldRoot is the old tree, a directory, a tar archive or a snapshot file
+     * @param newRoot is the new tree, same
+     * @return the changes, the root is the root of the new tree (a ' ' directory)
+     * @throws IOException if a tar archive or a snapshot can't be read
+     */
+    Change diff(FileEntry oldRoot, FileEntry newRoot) throws IOException {
+        try {
+            ForkJoinTask<TreeNode> oldTask = pool.submit(() -> load(oldRoot));
+            ForkJoinTask<TreeNode> newTask = pool.submit(() -> load(newRoot));
+            TreeNode oldTree = get(oldTask);
+            TreeNode newTree = get(newTask);
+
+            if (TarArchive.isArchive(oldRoot) || TarArchive.isArchive(newRoot)) {
+                mtimeResolution = 1000;
+            }
+            // only the files still on the disk can be hashed
+            boolean canHash = hash && oldRoot.dir && newRoot.dir;
+
+            Change root = new Change(' ', newTree.entry, compare(oldTree, newTree, canHash));
+
+            if (!ambiguous.isEmpty()) {
+                pool.submit(() -> ambiguous.parallelStream().forEach(change -> {
+                    Object oldKey = DuplicateFinder.contentsKey(change.old);
+                    boolean same = oldKey != null && oldKey.equals(DuplicateFinder.contentsKey(change.entry));
+                    change.kind = same ? SAME : '~';
+                    change.old = null;
+                })).join();
+                prune(root.children);
+            }
+            return root;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static TreeNode get(ForkJoinTask<TreeNode> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Walk a directory, or read a stored tree and filter it
+     */
+    private TreeNode load(FileEntry root) throws IOException {
+        if (root.dir) {
+            return new ScanTask(root, filter.root(root.path)).invoke();
+        }
+        TreeNode tree = TreeNode.read(root);
+        return filter(tree, filter.root(tree.entry.path));
+    }
+
+    /**
+     * Walk a directory and its subdirectories, each one in its own task
+     */
+    private static final class ScanTask extends RecursiveTask<TreeNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileEntry dir;
+        private final TreeFilter.Scope scope;
+
+        private ScanTask(FileEntry dir, TreeFilter.Scope scope) {
+            this.dir = dir;
+            this.scope = scope;
+        }
+
+        @Override
+        protected TreeNode compute() {
+            TreeNode node = new TreeNode(dir);
+            if (scope == null) {
+                return node;
+            }
+
+            List<Object> children = new ArrayList<>();
+            for (FileEntry entry : FileEntry.list(dir.path)) {
+                if (!scope.prints(entry)) {
+                    continue;
+                }
+                if (entry.dir) {
+                    ScanTask task = new ScanTask(entry, scope.enter(entry));
+                    task.fork();
+                    children.add(task);
+                } else {
+                    children.add(new TreeNode(entry));
+                }
+            }
+
+            for (Object child : children) {
+                node.add(child instanceof ScanTask ? ((ScanTask) child).join() : (TreeNode) child);
+            }
+            return node;
+        }
+    }
+
+    /**
+     * @return a copy of a stored tree with only the entries of the switches
+     */
+    private static TreeNode filter(TreeNode node, TreeFilter.Scope scope) {
+        TreeNode copy = new TreeNode(node.entry);
+        if (scope == null) {
+            return copy;
+        }
+        for (TreeNode child : node.children.values()) {
+            if (scope.prints(child.entry)) {
+                copy.add(child.entry.dir ? filter(child, scope.enter(child.entry)) : child);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * @return the changes between the contents of two directories, sorted by name
+     */
+    private List<Change> compare(TreeNode oldDir, TreeNode newDir, boolean canHash) {
+        Map<String, TreeNode> oldChildren = oldDir.children;
+        Map<String, TreeNode> newChildren = newDir.children;
+        TreeSet<String> names = new TreeSet<>(oldChildren.keySet());
+        names.addAll(newChildren.keySet());
+
+        List<Change> changes = new ArrayList<>();
+        for (String name : names) {
+            TreeNode oldNode = oldChildren.get(name);
+            TreeNode newNode = newChildren.get(name);
+
+            if (newNode == null) {
+                changes.add(new Change('-', oldNode.entry, null));
+            } else if (oldNode == null) {
+                changes.add(new Change('+', newNode.entry, null));
+            } else if (oldNode.entry.dir != newNode.entry.dir) {
+                changes.add(new Change('~', newNode.entry, null));
+            } else if (newNode.entry.dir) {
+                List<Change> inside = compare(oldNode, newNode, canHash);
+                if (!inside.isEmpty()) {
+                    changes.add(new Change(' ', newNode.entry, inside));
+                }
+            } else if (oldNode.entry.size != newNode.entry.size) {
+                changes.add(new Change('~', newNode.entry, null));
+            } else if (!sameTime(oldNode.entry, newNode.entry)) {
+                Change change = new Change(canHash ? AMBIGUOUS : '~', newNode.entry, null);
+                if (canHash) {
+                    change.old = oldNode.entry;
+                    ambiguous.add(change);
+                }
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    private boolean sameTime(FileEntry a, FileEntry b) {
+        return Math.floorDiv(a.lastModified, mtimeResolution) == Math.floorDiv(b.lastModified, mtimeResolution);
+    }
+
+    /**
+     * Remove the hashed files that are the same, and the directories left without changes
+     */
+    private static void prune(List<Change> changes) {
+        changes.removeIf(change -> {
+            if (change.children != null) {
+                prune(change.children);
+                return change.children.isEmpty();
+            }
+            return change.kind == SAME;
+        });
+    }
+}
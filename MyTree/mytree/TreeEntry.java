@@ -0,0 +1,98 @@
+package mytree;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**************************************************************
+
+An entry of the tree as given by TreeWalker: the file or directory and
+where it is in the tree.
+
+@author Kevin Sun
+
+**************************************************************/
+
+public final class TreeEntry {
+
+    public enum Type { FILE, DIRECTORY }
+
+    final FileEntry entry;
+    private final int depth;
+    private final boolean last;
+    private final IOException error;
+
+    TreeEntry(FileEntry entry, int depth, boolean last, IOException error) {
+        this.entry = entry;
+        this.depth = depth;
+        this.last = last;
+        this.error = error;
+    }
+
+    /**
+     * @return the depth in the tree, 1 for the entries of the root
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * @return the name of the file or directory
+     */
+    public String name() {
+        return entry.name;
+    }
+
+    /**
+     * @return the path, the path of the root resolved with the names of the entries above
+     */
+    public Path path() {
+        return entry.path;
+    }
+
+    /**
+     * @return FILE for everything that is not a directory
+     */
+    public Type type() {
+        return entry.dir ? Type.DIRECTORY : Type.FILE;
+    }
+
+    /**
+     * @return true if no other entry of the same directory comes after this one
+     */
+    public boolean isLast() {
+        return last;
+    }
+
+    /**
+     * @return true if the file or directory is hidden
+     */
+    public boolean isHidden() {
+        return entry.hidden;
+    }
+
+    /**
+     * @return the size in bytes
+     */
+    public long size() {
+        return entry.size;
+    }
+
+    /**
+     * @return the last modified time in milliseconds since 1970
+     */
+    public long lastModified() {
+        return entry.lastModified;
+    }
+
+    /**
+     * @return why a directory couldn't be read (then it has no contents, or only the first ones), null if it could
+     */
+    public IOException error() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return entry.path.toString();
+    }
+}
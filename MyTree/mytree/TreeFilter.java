@@ -0,0 +1,154 @@
+package mytree;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+/**************************************************************
+
+Decide which entries are in the tree: the -a and -d switches, the
+include/exclude patterns, the max depth and the .gitignore files. It
+also carries the order of the entries (--sort, see EntryOrder.java), so
+every walker gets it with the rest.
+
+-Description:
+    Everything is compiled once when the options are read. The walkers
+    ask a Scope, one per directory, before printing an entry and before
+    going into a directory, so an excluded directory (node_modules, .git,
+    target...) is never listed at all.
+
+    Like tree, the patterns are matched against the name of the entries:
+    -I excludes the files and the directories, -P only keeps the files
+    that match (the directories are still walked). A pattern is a glob and
+    can have alternatives separated by |, e.g. -I 'node_modules|target'.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class TreeFilter {
+
+    private final boolean all;
+    private final boolean dirOnly;
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private final int maxDepth;
+    private final boolean gitignore;
+    private final EntryOrder order;
+
+    /**
+     * @param all is the -a switch
+     * @param dirOnly is the -d switch
+     * @param includes are the patterns of -P
+     * @param excludes are the patterns of -I
+     * @param maxDepth is the max depth of -L, 0 for no limit
+     * @param gitignore is true to follow the .gitignore files
+     * @param order is the order of the entries, null for the order of the file system
+     */
+    TreeFilter(boolean all, boolean dirOnly, List<String> includes, List<String> excludes,
+            int maxDepth, boolean gitignore, EntryOrder order) {
+        this.all = all;
+        this.dirOnly = dirOnly;
+        compile(includes, this.includes);
+        compile(excludes, this.excludes);
+        this.maxDepth = maxDepth;
+        this.gitignore = gitignore;
+        this.order = order;
+    }
+
+    /**
+     * @return the order of the entries, null for the order of the file system
+     */
+    EntryOrder order() {
+        return order;
+    }
+
+    private static void compile(List<String> patterns, List<PathMatcher> matchers) {
+        for (String pattern : patterns) {
+            for (String glob : pattern.split("\\|")) {
+                if (!glob.isEmpty()) {
+                    matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param root is the root directory
+     * @return the scope of the entries of the root
+     */
+    Scope root(Path root) {
+        return new Scope(1, gitignore ? GitIgnore.read(root, null) : null);
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, Path name) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The filter of the entries of one directory
+     */
+    final class Scope {
+
+        private final int depth;
+        private final GitIgnore ignore;
+
+        private Scope(int depth, GitIgnore ignore) {
+            this.depth = depth;
+            this.ignore = ignore;
+        }
+
+        /**
+         * @return the depth of the entries of this directory
+         */
+        int depth() {
+            return depth;
+        }
+
+        /**
+         * @param entry is an entry of this directory
+         * @return true if the entry is part of the tree (it counts in the sizes of -s)
+         */
+        boolean keeps(FileEntry entry) {
+            if (entry.hidden && !all) {
+                return false;
+            }
+
+            Path name = entry.path.getFileName();
+            if (name != null) {
+                if (matches(excludes, name)) return false;
+                if (!entry.dir && !includes.isEmpty() && !matches(includes, name)) return false;
+            }
+
+            if (ignore != null) {
+                if (entry.dir && entry.name.equals(".git")) return false;
+                if (ignore.isIgnored(entry.path, entry.dir)) return false;
+            }
+            return true;
+        }
+
+        /**
+         * @param entry is an entry of this directory
+         * @return true if the entry is printed
+         */
+        boolean prints(FileEntry entry) {
+            return (!dirOnly || entry.dir) && keeps(entry);
+        }
+
+        /**
+         * @param dir is a printed directory of this directory
+         * @return the scope of its entries, or null if it is not walked (max depth)
+         */
+        Scope enter(FileEntry dir) {
+            if (maxDepth > 0 && depth >= maxDepth) {
+                return null;
+            }
+            return new Scope(depth + 1, gitignore ? GitIgnore.read(dir.path, ignore) : null);
+        }
+    }
+}
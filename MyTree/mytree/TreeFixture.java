@@ -0,0 +1,180 @@
+package mytree;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+/**************************************************************
+
+Build synthetic trees for MyTreeBench, always the same for the same shape,
+scale and seed.
+
+-Description:
+    The shapes are the trees that stress different parts of the walk:
+        WIDE   : a few directories with thousands of entries each (the
+                 lookahead and the listing cost)
+        DEEP   : long chains of directories with a few files (the stack of
+                 open directories and the offsets of the text format)
+        HIDDEN : a normal tree where half of the entries are hidden (the
+                 filter, with and without -a)
+        MIXED  : random fan-out, depth, sizes and hidden entries, closer to
+                 a real source tree
+
+    The names, the sizes and the mtimes all come from a seeded Random and
+    a fixed time, so two runs walk and print the exact same tree. The
+    files only hold zeros (up to 4 KB), only their size matters.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class TreeFixture {
+
+    enum Shape { WIDE, DEEP, HIDDEN, MIXED }
+
+    // 2019 Jan 15, the mtime of every entry
+    private static final FileTime TIME = FileTime.fromMillis(1547510400000L);
+    private static final int MAX_FILE_SIZE = 4096;
+
+    private final Random random;
+    private int nbEntries;
+
+    private TreeFixture(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Build a tree in a new temporary directory
+     * @param shape is the shape of the tree
+     * @param scale is about the number of entries of the tree
+     * @param seed is the seed of the names and sizes
+     * @return the root of the tree, delete it with delete()
+     */
+    static Path create(Shape shape, int scale, long seed) throws IOException {
+        Path root = Files.createTempDirectory("mytree-" + shape.name().toLowerCase() + "-");
+        try {
+            new TreeFixture(seed).fill(root, shape, scale);
+        } catch (IOException | RuntimeException e) {
+            delete(root);
+            throw e;
+        }
+        return root;
+    }
+
+    private void fill(Path root, Shape shape, int scale) throws IOException {
+        switch (shape) {
+            case WIDE:
+                for (int i = 0; i < 4; i++) {
+                    Path dir = dir(root, "wide" + i);
+                    files(dir, scale / 4, 0);
+                }
+                break;
+            case DEEP:
+                int chains = Math.max(1, scale / 1000);
+                for (int i = 0; i < chains; i++) {
+                    Path dir = dir(root, "chain" + i);
+                    for (int depth = 0; depth < 200 && nbEntries < scale; depth++) {
+                        dir = dir(dir, "d" + depth);
+                        files(dir, 4, 0);
+                    }
+                }
+                break;
+            case HIDDEN:
+                balanced(root, scale, 8, 0.5);
+                break;
+            default:
+                random(root, scale, 0);
+        }
+
+        // the mtimes last, the directories changed while they were filled
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.setLastModifiedTime(file, TIME);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.setLastModifiedTime(dir, TIME);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Delete a tree made by create()
+     */
+    static void delete(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * A tree with the same fan-out everywhere
+     * @param hidden is the part of the entries that are hidden
+     */
+    private void balanced(Path dir, int budget, int fanOut, double hidden) throws IOException {
+        files(dir, fanOut, hidden);
+        budget -= fanOut;
+        if (budget <= 0) return;
+
+        int nbDirs = Math.min(fanOut, Math.max(1, budget / fanOut));
+        for (int i = 0; i < nbDirs; i++) {
+            Path sub = dir(dir, (random.nextDouble() < hidden ? "." : "") + "dir" + i);
+            balanced(sub, budget / nbDirs - 1, fanOut, hidden);
+        }
+    }
+
+    /**
+     * A tree with a random fan-out, the deeper the fewer directories
+     */
+    private void random(Path dir, int budget, int depth) throws IOException {
+        int nbFiles = Math.min(budget, 1 + random.nextInt(40));
+        files(dir, nbFiles, 0.05);
+        budget -= nbFiles;
+        if (budget <= 0 || depth >= 12) return;
+
+        int nbDirs = 1 + random.nextInt(Math.max(1, 8 - depth / 2));
+        for (int i = 0; i < nbDirs && budget > 0; i++) {
+            int share = i == nbDirs - 1 ? budget : random.nextInt(budget + 1);
+            Path sub = dir(dir, (random.nextDouble() < 0.05 ? "." : "") + name(i));
+            random(sub, share - 1, depth + 1);
+            budget -= share;
+        }
+    }
+
+    private Path dir(Path parent, String name) throws IOException {
+        nbEntries++;
+        return Files.createDirectory(parent.resolve(name));
+    }
+
+    private void files(Path dir, int count, double hidden) throws IOException {
+        for (int i = 0; i < count; i++) {
+            String name = (random.nextDouble() < hidden ? "." : "") + name(i) + ".txt";
+            Files.write(dir.resolve(name), new byte[random.nextInt(MAX_FILE_SIZE)]);
+            nbEntries++;
+        }
+    }
+
+    private String name(int i) {
+        // random enough that the directory order is not the creation order
+        return Integer.toString(random.nextInt(1 << 20), 36) + "_" + i;
+    }
+}
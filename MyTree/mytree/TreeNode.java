@@ -0,0 +1,120 @@
+package mytree;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**************************************************************
+
+A file or a directory of a tree kept in memory, with the contents of
+the directories.
+
+-Description:
+    Most of MyTree streams the entries and forgets them, this is for the
+    modes that need the whole tree, like the snapshot cache.
+
+    scan() builds the tree from the file system and can reuse an older
+    tree: a directory whose mtime didn't change has the same entries, so
+    it is not listed again and its files are taken from the old tree. Its
+    subdirectories are still stat'ed (one call each) because a change deep
+    inside doesn't change the mtime of the parents. The size and mtime of
+    the reused files are the ones of the old tree.
+
+    The children of a directory are kept by name, in the order they were
+    added, so the watch mode finds and removes one without a scan.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class TreeNode {
+
+    // mtimes can be rounded to the second (or 2 seconds on FAT), so a directory
+    // changed right before the old tree was taken may look unchanged
+    private static final long MTIME_RESOLUTION = 2000;
+
+    FileEntry entry; // replaced by the watch mode when the entry changes
+    final Map<String, TreeNode> children; // by name, null for the files
+
+    TreeNode(FileEntry entry) {
+        this.entry = entry;
+        this.children = entry.dir ? new LinkedHashMap<>() : null;
+    }
+
+    /**
+     * Add a child to a directory, it replaces the child of the same name
+     */
+    void add(TreeNode child) {
+        children.put(child.entry.name, child);
+    }
+
+    /**
+     * Read the tree stored in a file
+     * @param file is a tar archive or a snapshot file
+     * @return the tree, its root is a directory
+     * @throws IOException if the file can't be read or is not a stored tree
+     */
+    static TreeNode read(FileEntry file) throws IOException {
+        if (TarArchive.isArchive(file)) {
+            return TarArchive.read(file);
+        }
+        return Snapshot.read(file.path).root;
+    }
+
+    /**
+     * @param entry is a file
+     * @return true if it is a file read() can read, from its name
+     */
+    static boolean isStored(FileEntry entry) {
+        return TarArchive.isArchive(entry) || Snapshot.isSnapshot(entry);
+    }
+
+    /**
+     * Build the tree of a directory
+     * @param dir is the directory
+     * @param old is the older tree of the same directory, can be null
+     * @param oldTime is when the older tree was taken, in milliseconds
+     * @return the tree
+     */
+    static TreeNode scan(FileEntry dir, TreeNode old, long oldTime) {
+        if (old != null && old.children != null 
+                && old.entry.lastModified == dir.lastModified
+                && dir.lastModified < oldTime - MTIME_RESOLUTION) {
+            TreeNode node = reuse(dir, old, oldTime);
+            if (node != null) {
+                return node;
+            }
+        }
+
+        TreeNode node = new TreeNode(dir);
+        Map<String, TreeNode> oldChildren = old == null || old.children == null 
+                ? Collections.emptyMap() : old.children;
+
+        for (FileEntry entry : FileEntry.list(dir.path)) {
+            node.add(entry.dir ? scan(entry, oldChildren.get(entry.name), oldTime) : new TreeNode(entry));
+        }
+        return node;
+    }
+
+    /**
+     * Take the entries of an unchanged directory from the older tree
+     * @return the tree, or null if a subdirectory of the old tree is not a directory anymore
+     */
+    private static TreeNode reuse(FileEntry dir, TreeNode old, long oldTime) {
+        TreeNode node = new TreeNode(dir);
+
+        for (TreeNode child : old.children.values()) {
+            if (child.children == null) {
+                node.add(child);
+            } else {
+                FileEntry subdir = FileEntry.read(child.entry.path);
+                if (subdir == null || !subdir.dir) {
+                    return null;
+                }
+                node.add(scan(subdir, child, oldTime));
+            }
+        }
+        return node;
+    }
+}
@@ -0,0 +1,90 @@
+package mytree;
+
+import java.io.IOException;
+import java.util.List;
+
+/**************************************************************
+
+Turn the walk of a tree into output.
+
+-Description:
+    The walkers of MyTree call these methods in the tree order while they
+    walk, so a renderer writes everything as it comes and never holds the
+    tree in memory. For a directory, startDirectory() is followed by its
+    contents and then by endDirectory().
+
+    The depth of the entries of the root is 1.
+
+    With -s (disk usage), the size of a directory entry is the total size
+    of the directory and everything printed under it.
+
+@author Kevin Sun
+
+**************************************************************/
+
+interface TreeRenderer {
+
+    /**
+     * Called once before everything else
+     * @param root is the directory being walked
+     */
+    void begin(FileEntry root) throws IOException;
+
+    /**
+     * @param entry is a file (anything that is not a directory)
+     * @param depth is the depth of the entry
+     * @param last is true if this is the last entry of its directory
+     */
+    void file(FileEntry entry, int depth, boolean last) throws IOException;
+
+    /**
+     * @param entry is a directory, its contents come next
+     * @param depth is the depth of the entry
+     * @param last is true if this is the last entry of its directory
+     */
+    void startDirectory(FileEntry entry, int depth, boolean last) throws IOException;
+
+    /**
+     * Called after the contents of the last started directory that is not ended yet
+     */
+    void endDirectory() throws IOException;
+
+    /**
+     * Called once after the whole tree
+     * @param nbDirs is the number of directories
+     * @param nbFiles is the number of files
+     */
+    void end(int nbDirs, int nbFiles) throws IOException;
+
+    /**
+     * Only for --diff, called right before file() or startDirectory() for an 
+     * entry that is not the same in both trees
+     * @param kind is '+' for an added entry, '-' for a removed one and '~' for a changed one
+     */
+    void mark(char kind) throws IOException;
+
+    /**
+     * Called right before startDirectory() for a directory that couldn't be
+     * read, its contents are missing or cut short
+     */
+    void error() throws IOException;
+
+    /**
+     * Only for the watch mode, called after end() for each change of the tree
+     * @param kind is '+' for a new entry, '-' for a removed one and '~' for a changed one
+     * @param entry is the entry, for a removed entry this is how it was before
+     */
+    void change(char kind, FileEntry entry) throws IOException;
+
+    /**
+     * Only for --top, called after end() with the largest directories
+     * @param dirs are the directories with their total size, largest first
+     */
+    void largest(List<FileEntry> dirs) throws IOException;
+
+    /**
+     * Only for --dupes, called instead of the tree
+     * @param groups are the groups of files with the same contents
+     */
+    void duplicates(List<List<FileEntry>> groups) throws IOException;
+}
@@ -0,0 +1,332 @@
+package mytree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**************************************************************
+
+The tree of MyTree as a library: walk a directory lazily, in the order
+MyTree prints it, without printing anything or exiting.
+
+-Description:
+    The entries come from the same walk as the sequential MyTree: a
+    stack of directories read one entry ahead (see DirectoryCursor.java),
+    so nothing is listed before it is asked for and the memory doesn't
+    grow with the size of the tree. The walk keeps directories open, so
+    close the Walk (or the Stream) when you stop before the end. At most
+    MAX_OPEN of them are open: deeper than that, the rest of a directory
+    is read into memory before walking its subdirectory, so a deep tree
+    doesn't run out of file descriptors.
+
+    A directory that can't be read is given with its error (see
+    TreeEntry.error()) and without its contents.
+
+-Example: (with import mytree.TreeEntry and mytree.TreeWalker)
+        try (Stream<TreeEntry> entries = new TreeWalker(Paths.get("src")).exclude("*.class").stream()) {
+            entries.filter(entry -> entry.type() == TreeEntry.Type.FILE)
+                   .forEach(entry -> index(entry.path(), entry.size()));
+        }
+
+    The options are the ones of the MyTree switches: -a, -d, -I, -P, -L,
+    --gitignore, --sort, --dirsfirst and --prefetch.
+
+@author Kevin Sun
+
+**************************************************************/
+
+public final class TreeWalker {
+
+    /**
+     * The keys of sortBy()
+     */
+    public enum Sort { NAME, SIZE, MTIME }
+
+    private final Path root;
+    private boolean all = false;
+    private boolean dirOnly = false;
+    private final List<String> includes = new ArrayList<>();
+    private final List<String> excludes = new ArrayList<>();
+    private int maxDepth = 0;
+    private boolean gitignore = false;
+    private int prefetch = 0;
+    private Sort sort = null;
+    private boolean dirsFirst = false;
+
+    /**
+     * @param root is the directory to walk
+     */
+    public TreeWalker(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * @param all is true to walk the hidden files and directories too (-a)
+     * @return this walker
+     */
+    public TreeWalker showHidden(boolean all) {
+        this.all = all;
+        return this;
+    }
+
+    /**
+     * @param dirOnly is true to only give the directories (-d)
+     * @return this walker
+     */
+    public TreeWalker directoriesOnly(boolean dirOnly) {
+        this.dirOnly = dirOnly;
+        return this;
+    }
+
+    /**
+     * @param pattern is a glob, only the files whose name matches one of the include patterns are given (-P)
+     * @return this walker
+     */
+    public TreeWalker include(String pattern) {
+        includes.add(pattern);
+        return this;
+    }
+
+    /**
+     * @param pattern is a glob, the entries whose name matches are not given or walked (-I)
+     * @return this walker
+     */
+    public TreeWalker exclude(String pattern) {
+        excludes.add(pattern);
+        return this;
+    }
+
+    /**
+     * @param maxDepth is the max depth of the entries, 0 for no limit (-L)
+     * @return this walker
+     */
+    public TreeWalker maxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("The max depth can't be negative.");
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * @param gitignore is true to skip what the .gitignore files ignore, and .git (--gitignore)
+     * @return this walker
+     */
+    public TreeWalker gitignore(boolean gitignore) {
+        this.gitignore = gitignore;
+        return this;
+    }
+
+    /**
+     * @param sort is the order of the entries of a directory: by name, the largest first or the oldest first,
+     *        null for the order of the file system (--sort)
+     * @return this walker
+     */
+    public TreeWalker sortBy(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    /**
+     * @param dirsFirst is true to give the directories of a directory before its files (--dirsfirst)
+     * @return this walker
+     */
+    public TreeWalker directoriesFirst(boolean dirsFirst) {
+        this.dirsFirst = dirsFirst;
+        return this;
+    }
+
+    /**
+     * @param inFlight is the max number of directories listed ahead of the walk, 
+     *        0 to list them only when the walk gets there (--prefetch)
+     * @return this walker
+     */
+    public TreeWalker prefetch(int inFlight) {
+        if (inFlight < 0) {
+            throw new IllegalArgumentException("The prefetch can't be negative.");
+        }
+        this.prefetch = inFlight;
+        return this;
+    }
+
+    /**
+     * Start a walk
+     * @return the entries of the tree, in the tree order
+     * @throws NoSuchFileException if the root doesn't exist
+     * @throws NotDirectoryException if the root is not a directory
+     */
+    public Walk iterator() throws IOException {
+        FileEntry dir = FileEntry.read(root);
+        if (dir == null) {
+            throw new NoSuchFileException(root.toString());
+        } else if (!dir.dir) {
+            throw new NotDirectoryException(root.toString());
+        }
+        EntryOrder order = sort == null && !dirsFirst ? null : new EntryOrder(sort == null ? Sort.NAME : sort, dirsFirst);
+        return walk(new TreeFilter(all, dirOnly, includes, excludes, maxDepth, gitignore, order), root, prefetch);
+    }
+
+    /**
+     * Start a walk with a filter already made, for MyTree
+     * @param root is a directory
+     * @param prefetch is the max number of directories listed ahead, 0 for none
+     */
+    static Walk walk(TreeFilter filter, Path root, int prefetch) {
+        TreeFilter.Scope scope = filter.root(root);
+        return new Walk(scope, root, filter.order(),
+                prefetch > 0 ? new DirectoryPrefetcher(root, scope, filter.order(), prefetch) : null);
+    }
+
+    /**
+     * Start a walk
+     * @return the entries of the tree, in the tree order, close it to close the walk
+     * @throws NoSuchFileException if the root doesn't exist
+     * @throws NotDirectoryException if the root is not a directory
+     */
+    public Stream<TreeEntry> stream() throws IOException {
+        Walk walk = iterator();
+        Spliterator<TreeEntry> spliterator = Spliterators.spliteratorUnknownSize(walk, 
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(walk::close);
+    }
+
+    // the max number of directories a walk keeps open
+    private static final int MAX_OPEN = 16;
+
+    /**
+     * A walk of the tree. The stack holds a cursor for every directory that 
+     * still has entries to give, and the next entry is always read ahead.
+     */
+    public static final class Walk implements Iterator<TreeEntry>, Closeable {
+
+        private final Deque<Level> stack = new ArrayDeque<>();
+        // the number of cursors of the stack that hold an open directory
+        private int open = 0;
+        private TreeEntry next;
+        // null for the order of the file system
+        private final EntryOrder order;
+        // null without prefetch
+        private final DirectoryPrefetcher prefetcher;
+
+        private Walk(TreeFilter.Scope scope, Path root, EntryOrder order, DirectoryPrefetcher prefetcher) {
+            this.order = order;
+            this.prefetcher = prefetcher;
+            push(level(scope, root));
+            advance();
+        }
+
+        private void push(Level level) {
+            stack.push(level);
+            if (level.cursor.isOpen()) open++;
+        }
+
+        private void pop() {
+            Level level = stack.pop();
+            level.cursor.close();
+            if (level.cursor.isOpen()) open--;
+        }
+
+        /**
+         * @param scope is the scope of the directory, null if it is not walked
+         */
+        private Level level(TreeFilter.Scope scope, Path dir) {
+            if (prefetcher != null) {
+                DirectoryPrefetcher.Listing listing = prefetcher.take(dir);
+                return new Level(listing.scope, DirectoryCursor.of(listing.entries));
+            }
+            return new Level(scope, scope == null ? DirectoryCursor.empty() : DirectoryCursor.open(dir, scope::prints, order));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public TreeEntry next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            TreeEntry entry = next;
+            advance();
+            return entry;
+        }
+
+        private void advance() {
+            next = null;
+
+            while (next == null && !stack.isEmpty()) {
+                Level level = stack.peek();
+
+                if (!level.cursor.hasNext()) {
+                    pop();
+                    continue;
+                }
+
+                FileEntry entry = level.cursor.next();
+                boolean last = !level.cursor.hasNext();
+                IOException error = null;
+
+                if (entry.dir) {
+                    if (last) {
+                        // nothing left at this level, don't keep it open while walking the subdirectory
+                        pop();
+                    } else if (open >= MAX_OPEN && level.cursor.isOpen()) {
+                        // too deep to keep every level open, the rest of this one waits in memory
+                        stack.pop();
+                        open--;
+                        push(new Level(level.scope, level.cursor.load()));
+                    }
+                    // the prefetcher already knows the scope of the subdirectory
+                    Level sublevel = level(prefetcher == null ? level.scope.enter(entry) : null, entry.path);
+                    push(sublevel);
+                    error = sublevel.cursor.error();
+                }
+                next = new TreeEntry(entry, level.scope.depth(), last, error);
+            }
+
+            if (stack.isEmpty() && prefetcher != null) {
+                prefetcher.close();
+            }
+        }
+
+        /**
+         * Close the directories still open, the walk ends
+         */
+        @Override
+        public void close() {
+            while (!stack.isEmpty()) {
+                pop();
+            }
+            if (prefetcher != null) {
+                prefetcher.close();
+            }
+            next = null;
+        }
+    }
+
+    /**
+     * A directory being walked
+     */
+    private static class Level {
+        private final TreeFilter.Scope scope;
+        private final DirectoryCursor cursor;
+
+        private Level(TreeFilter.Scope scope, DirectoryCursor cursor) {
+            this.scope = scope;
+            this.cursor = cursor;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package mytree;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**************************************************************
+
+Keep a tree in memory up to date with the WatchService, for the watch
+mode of MyTree.
+
+-Description:
+    The tree is walked once and every directory of it is registered to the
+    WatchService. After that nothing is walked again: each event updates
+    the directory it belongs to and is reported as a change ('+', '-', '~').
+    The changes of the events that come together are merged before being
+    printed, so writing a file is one '~' and not one per write() call.
+    A new directory is walked and registered, and what the walk finds in it
+    is reported as new too; a removed one is forgotten with all the keys of
+    its subtree. The children are found by name, so an event costs the
+    same in a directory of a million entries as in a small one.
+
+    When events were lost (OVERFLOW), only the directory of that key is
+    listed again and compared with the tree, its subdirectories have their
+    own keys and are kept as they are.
+
+    Only the entries printed by MyTree (see TreeFilter.java) are in the
+    tree, so the other ones are not reported and their directories are not
+    watched. The directories deeper than -L are in the tree but empty.
+
+    On Linux each directory is an inotify watch, if the limit is reached
+    (/proc/sys/fs/inotify/max_user_watches) the directories after it are
+    in the tree but not watched, and a warning is printed.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class TreeWatcher {
+
+    // the events that come this close together are printed together
+    private static final long BATCH_MILLIS = 100;
+
+    private final WatchService watcher;
+    // the scope of each watched directory
+    private final Map<TreeNode, TreeFilter.Scope> scopes = new IdentityHashMap<>();
+    private final Map<WatchKey, TreeNode> nodes = new HashMap<>();
+    private final Map<TreeNode, WatchKey> keys = new IdentityHashMap<>();
+    // the changes of the current batch, by path
+    private final Map<Path, Change> batch = new LinkedHashMap<>();
+    private boolean warned = false;
+
+    TreeWatcher() throws IOException {
+        this.watcher = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Walk a directory into a tree and watch all its directories
+     * @param dir is the directory
+     * @param scope is the scope of the directory, null if it is not walked
+     * @return the tree
+     */
+    TreeNode build(FileEntry dir, TreeFilter.Scope scope) {
+        return build(dir, scope, false);
+    }
+
+    /**
+     * @param created is true for a directory created while watching, its contents are reported as new
+     */
+    private TreeNode build(FileEntry dir, TreeFilter.Scope scope, boolean created) {
+        TreeNode node = new TreeNode(dir);
+        if (scope == null) {
+            return node;
+        }
+
+        // registered before listing, so nothing created in between is missed
+        register(node, scope);
+        for (FileEntry entry : list(dir.path, scope)) {
+            node.add(entry.dir ? build(entry, scope.enter(entry), created) : new TreeNode(entry));
+            if (created) {
+                report('+', entry);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Apply the events to the tree and report the changes, until the root is removed
+     * @param renderer gets the changes
+     * @param out is flushed after each batch of changes
+     */
+    void watch(TreeRenderer renderer, Flushable out) throws IOException, InterruptedException {
+        try {
+            while (!nodes.isEmpty()) {
+                WatchKey key = watcher.take();
+                while (key != null) {
+                    process(key);
+                    key = watcher.poll(BATCH_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                for (Change change : batch.values()) {
+                    renderer.change(change.kind, change.entry);
+                }
+                batch.clear();
+                out.flush();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // nothing more to watch
+        } finally {
+            watcher.close();
+        }
+    }
+
+    private void process(WatchKey key) {
+        TreeNode dir = nodes.get(key);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null) {
+                break;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                rescan(dir);
+                continue;
+            }
+
+            Path name = (Path) event.context();
+            TreeNode old = dir.children.get(name.toString());
+            FileEntry entry = FileEntry.read(dir.entry.path.resolve(name));
+            if (entry != null && !scopes.get(dir).prints(entry)) {
+                entry = null;
+            }
+
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                if (old != null && entry == null) {
+                    remove(dir, old);
+                    report('-', old.entry);
+                }
+            } else if (entry != null) {
+                update(dir, old, entry);
+            }
+        }
+
+        if (!key.reset()) {
+            // the directory is gone, its parent gets the delete event
+            forget(nodes.get(key));
+        }
+    }
+
+    private static List<FileEntry> list(Path dir, TreeFilter.Scope scope) {
+        List<FileEntry> entries = FileEntry.list(dir);
+        entries.removeIf(entry -> !scope.prints(entry));
+        return entries;
+    }
+
+    /**
+     * List a directory again after an overflow and report the differences
+     */
+    private void rescan(TreeNode dir) {
+        Map<String, TreeNode> oldChildren = new HashMap<>(dir.children);
+
+        for (FileEntry entry : list(dir.entry.path, scopes.get(dir))) {
+            update(dir, oldChildren.remove(entry.name), entry);
+        }
+
+        for (TreeNode old : oldChildren.values()) {
+            remove(dir, old);
+            report('-', old.entry);
+        }
+    }
+
+    /**
+     * Put an entry that exists in the tree
+     * @param dir is its directory
+     * @param old is the node of the entry in the tree, null if it is a new entry
+     * @param entry is the entry as it is now
+     */
+    private void update(TreeNode dir, TreeNode old, FileEntry entry) {
+        if (old == null) {
+            report('+', entry);
+            dir.add(newNode(dir, entry));
+        } else if (old.entry.dir != entry.dir) {
+            remove(dir, old);
+            report('~', entry);
+            dir.add(newNode(dir, entry));
+        } else {
+            // the mtime of a directory changes with its contents, which are reported on their own
+            boolean changed = !entry.dir
+                    && (old.entry.size != entry.size || old.entry.lastModified != entry.lastModified);
+            old.entry = entry;
+            if (changed) {
+                report('~', entry);
+            }
+        }
+    }
+
+    /**
+     * Add a change to the batch, merged with the change of the same path if there is one
+     */
+    private void report(char kind, FileEntry entry) {
+        Change change = batch.remove(entry.path);
+
+        if (kind == '-' && entry.dir) {
+            // what happened inside doesn't matter anymore
+            Iterator<Path> it = batch.keySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().startsWith(entry.path)) it.remove();
+            }
+        }
+
+        if (change == null) {
+            batch.put(entry.path, new Change(kind, entry));
+        } else if (change.kind == '+' && kind != '-') {
+            // still a new entry
+            batch.put(entry.path, new Change('+', entry));
+        } else if (change.kind == '-' && kind == '+') {
+            // removed and created again
+            batch.put(entry.path, new Change('~', entry));
+        } else if (change.kind != '+') {
+            batch.put(entry.path, new Change(kind, entry));
+        }
+        // else created and removed in the same batch, nothing to report
+    }
+
+    private static class Change {
+        private final char kind;
+        private final FileEntry entry;
+
+        private Change(char kind, FileEntry entry) {
+            this.kind = kind;
+            this.entry = entry;
+        }
+    }
+
+    private TreeNode newNode(TreeNode dir, FileEntry entry) {
+        return entry.dir ? build(entry, scopes.get(dir).enter(entry), true) : new TreeNode(entry);
+    }
+
+    private void remove(TreeNode dir, TreeNode child) {
+        dir.children.remove(child.entry.name);
+        forget(child);
+    }
+
+    private void register(TreeNode node, TreeFilter.Scope scope) {
+        try {
+            WatchKey key = node.entry.path.register(watcher, 
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            nodes.put(key, node);
+            keys.put(node, key);
+            scopes.put(node, scope);
+        } catch (IOException e) {
+            if (!warned) {
+                System.err.println("Cannot watch some directories: " + e.getMessage());
+                warned = true;
+            }
+        }
+    }
+
+    /**
+     * Stop watching the directories of a subtree
+     */
+    private void forget(TreeNode node) {
+        if (node == null || node.children == null) return;
+
+        List<TreeNode> stack = new ArrayList<>();
+        stack.add(node);
+        while (!stack.isEmpty()) {
+            TreeNode dir = stack.remove(stack.size() - 1);
+            WatchKey key = keys.remove(dir);
+            scopes.remove(dir);
+            if (key != null) {
+                key.cancel();
+                nodes.remove(key);
+            }
+            for (TreeNode child : dir.children.values()) {
+                if (child.children != null) stack.add(child);
+            }
+        }
+    }
+}
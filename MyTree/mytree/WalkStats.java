@@ -0,0 +1,251 @@
+package mytree;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**************************************************************
+
+Where the time of a walk goes, for the --stats switch of MyTree.
+
+-Description:
+    The walkers don't know about it: the directory listings (FileEntry.list
+    and DirectoryCursor) and the attribute reads (FileEntry.read) report to
+    the current stats, if there are stats at all. Without --stats there is
+    no current stats and the only cost is a null check.
+
+    The time of a directory is the time spent reading it and the
+    attributes of its entries, not the time spent in its subdirectories, so
+    a slow directory is slow by itself (a mount, a huge directory...). It
+    goes to:
+        - a histogram of the listing times, one bucket per power of 2 of
+          microseconds
+        - the N slowest directories, kept in a heap of N entries
+        - a MyTree.DirectoryListing JFR event, and a MyTree.WalkStats event
+          with the counters at the end, so a recording shows them next
+          to the GC and the file I/O events:
+            $ java -XX:StartFlightRecording=filename=tree.jfr MyTree --stats path
+          The events begin when the listing (or the walk) starts and end
+          when it is done, so their JFR duration is the time. That is why
+          the sequential walk reads a directory at once with --stats
+          instead of one entry ahead (see DirectoryCursor.java): its
+          listing is then one span of time.
+
+    Everything can be called from the threads of the parallel walk.
+
+@author Kevin Sun
+
+**************************************************************/
+
+final class WalkStats {
+
+    private static final int SLOWEST = 10;
+
+    // the stats of the walk going on, null without --stats
+    private static volatile WalkStats current;
+
+    private final LongAdder listings = new LongAdder();
+    private final LongAdder failedListings = new LongAdder();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder attributeReads = new LongAdder();
+    private final LongAdder failedReads = new LongAdder();
+    private final LongAdder listingNanos = new LongAdder();
+    // bucket i counts the listings of [2^(i-1), 2^i) microseconds, bucket 0 the ones under 1 microsecond
+    private final AtomicLongArray histogram = new AtomicLongArray(64);
+    private final PriorityQueue<Listing> slowest = new PriorityQueue<>(Comparator.comparingLong(listing -> listing.nanos));
+    private final long start = System.nanoTime();
+    private final SummaryEvent summary = new SummaryEvent();
+
+    private WalkStats() {
+        summary.begin();
+    }
+
+    /**
+     * Start collecting, everything listed or read from now on counts
+     * @return the stats
+     */
+    static WalkStats start() {
+        WalkStats stats = new WalkStats();
+        current = stats;
+        return stats;
+    }
+
+    /**
+     * @return the stats being collected, null if they are not
+     */
+    static WalkStats current() {
+        return current;
+    }
+
+    /**
+     * Called for every read of the attributes of a path
+     * @param failed is true if the path couldn't be read
+     */
+    void attributesRead(boolean failed) {
+        attributeReads.increment();
+        if (failed) failedReads.increment();
+    }
+
+    /**
+     * Called right before a directory is listed
+     * @return the JFR event of the listing, begun, for listed()
+     */
+    static ListingEvent beginListing() {
+        ListingEvent event = new ListingEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Called when a directory is done
+     * @param event is the event of beginListing()
+     * @param dir is the directory
+     * @param nbEntries is the number of entries read from it
+     * @param nanos is the time spent listing it and reading the attributes of its entries
+     * @param failed is true if the directory couldn't be read (completely)
+     */
+    void listed(ListingEvent event, Path dir, int nbEntries, long nanos, boolean failed) {
+        listings.increment();
+        if (failed) failedListings.increment();
+        entries.add(nbEntries);
+        listingNanos.add(nanos);
+        histogram.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos / 1000));
+
+        synchronized (slowest) {
+            if (slowest.size() < SLOWEST) {
+                slowest.add(new Listing(dir, nbEntries, nanos));
+            } else if (slowest.peek().nanos < nanos) {
+                slowest.poll();
+                slowest.add(new Listing(dir, nbEntries, nanos));
+            }
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = dir.toString();
+            event.entries = nbEntries;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Stop collecting and write the report
+     * @param out is where the report goes
+     */
+    void report(Writer out) throws IOException {
+        if (current == this) {
+            current = null;
+        }
+        long walkNanos = System.nanoTime() - start;
+
+        summary.end();
+        if (summary.shouldCommit()) {
+            summary.listings = listings.sum();
+            summary.failedListings = failedListings.sum();
+            summary.entries = entries.sum();
+            summary.attributeReads = attributeReads.sum();
+            summary.failedReads = failedReads.sum();
+            summary.listingTime = listingNanos.sum();
+            summary.commit();
+        }
+
+        String nl = System.lineSeparator();
+        out.write(String.format("%d directory listings (%d failed), %d entries, %d attribute reads (%d failed)%n",
+                listings.sum(), failedListings.sum(), entries.sum(), attributeReads.sum(), failedReads.sum()));
+        out.write(String.format("%.1f ms listing, %.1f ms in total%n", listingNanos.sum() / 1e6, walkNanos / 1e6));
+
+        out.write(nl + "listing time" + nl);
+        for (int i = 0; i < histogram.length(); i++) {
+            long count = histogram.get(i);
+            if (count > 0) {
+                String from = i == 0 ? "0" : micros(1L << (i - 1));
+                out.write(String.format("  %8s - %-8s %10d%n", from, micros(1L << i), count));
+            }
+        }
+
+        List<Listing> listings;
+        synchronized (slowest) {
+            listings = new ArrayList<>(slowest);
+        }
+        listings.sort(Comparator.comparingLong((Listing listing) -> listing.nanos).reversed());
+
+        out.write(nl + "slowest directories" + nl);
+        for (Listing listing : listings) {
+            out.write(String.format("  %10.3f ms %10d entries  %s%n", listing.nanos / 1e6, listing.entries, listing.dir));
+        }
+        out.flush();
+    }
+
+    private static String micros(long micros) {
+        if (micros >= 1_000_000) return micros / 1_000_000 + " s";
+        if (micros >= 1000) return micros / 1000 + " ms";
+        return micros + " us";
+    }
+
+    private static final class Listing {
+        private final Path dir;
+        private final int entries;
+        private final long nanos;
+
+        private Listing(Path dir, int entries, long nanos) {
+            this.dir = dir;
+            this.entries = entries;
+            this.nanos = nanos;
+        }
+    }
+
+    @Name("MyTree.DirectoryListing")
+    @Label("Directory Listing")
+    @Category("MyTree")
+    @Description("A directory read by MyTree, with the attributes of its entries")
+    static final class ListingEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Entries")
+        int entries;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("MyTree.WalkStats")
+    @Label("Walk Stats")
+    @Category("MyTree")
+    @Description("The counters of a walk of MyTree")
+    static final class SummaryEvent extends Event {
+        @Label("Listings")
+        long listings;
+
+        @Label("Failed Listings")
+        long failedListings;
+
+        @Label("Entries")
+        long entries;
+
+        @Label("Attribute Reads")
+        long attributeReads;
+
+        @Label("Failed Attribute Reads")
+        long failedReads;
+
+        // the duration of the event is the whole walk, this is the part of it spent listing
+        @Label("Listing Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long listingTime;
+    }
+}
@@ -193,7 +193,7 @@ public class TwoSCompConverter {
      * @param  binComp is a String that contains the n-bit 2's complement binary 
      * @return the decimal number
      */
-    private static int twoSCompToDecimal(String binComp) {
+    static int twoSCompToDecimal(String binComp) {
 
         byte[] arr = binComp.getBytes();
 
@@ -236,7 +236,7 @@ public class TwoSCompConverter {
      * @param hexaComp the string that represents a 2'scomplement in hexadecimal format  
      * @return  the string that represents a 2'scomplement in binary format  
      */
-    private static String hexaToBin(String hexaComp) {
+    static String hexaToBin(String hexaComp) {
         String binComp = "";
         // skip 0x in the string
         for (int i = 2; i < hexaComp.length(); i++) {
@@ -276,7 +276,7 @@ public class TwoSCompConverter {
      * @param i an integer
      * @return an int array that contains the 2's complement representation of i
      */
-    private static int[] to2SComplement(int i, int nbBits) {
+    static int[] to2SComplement(int i, int nbBits) {
         int[] arr = new int[nbBits]; 
 
         if (i == 0) {
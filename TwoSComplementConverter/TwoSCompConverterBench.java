@@ -0,0 +1,285 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**************************************************************
+
+Measure the conversions of TwoSCompConverter against the JDK.
+
+Description:
+    Each conversion path of TwoSCompConverter is measured next to the JDK
+    doing the same work, on the same inputs:
+        to2SComplement    : Integer.toBinaryString(int)
+        twoSCompToDecimal : Long.parseLong(String, 2), sign extended
+        hexaToBin         : Integer.toBinaryString(Integer.parseUnsignedInt(String, 16))
+                            (without the leading zeros hexaToBin keeps)
+
+    The inputs are 4096 random ints with as many of each bit length
+    (1 to 31), a quarter of them negative, written with the number of
+    bits main() would use (the smallest multiple of 4 that holds the sign)
+    and with 32 bits.
+
+    For each one it prints the ns per op (median of the iterations, with
+    the min and the max) and the bytes allocated per op by the benchmark
+    thread. An iteration repeats the benchmark until it takes at least
+    100 ms. The warmup runs iterations for at least --warmup seconds (1 by
+    default), and until two of them in a row take the same time within 5%,
+    so the JIT is done with the code before anything is measured.
+
+    There is no JMH here (no build to pull it), so this is a plain loop
+    with the usual care: warmup, results kept in a sink so the JIT can't
+    drop the work, and the inputs built before any timing.
+
+Compilation: $ javac TwoSCompConverterBench.java
+
+Execution: $ java TwoSCompConverterBench [--seed N] [--warmup seconds] [--iterations N] [filter ...]
+    With filters, only the benchmarks whose name contains one of them.
+
+@author: Kevin Sun
+
+****************************************************************/
+
+public class TwoSCompConverterBench {
+
+    private static final int SIZE = 1 << 12;
+    private static final long MIN_ITERATION_NANOS = 100_000_000L;
+    // the warmup stops there even if the times still move
+    private static final int MAX_WARMUP_FACTOR = 10;
+
+    // everything the benchmarks compute ends up here
+    private static volatile long sink;
+
+    private interface Benchmark {
+        /**
+         * Do an op on each input
+         * @return something out of the results, for the sink
+         */
+        long run();
+    }
+
+    private final List<String> filters = new ArrayList<>();
+    private long seed = 2019;
+    private int warmup = 1; // seconds
+    private int iterations = 10;
+
+    private int[] values;
+    private int[] nbBits;
+    private String[] binaries;
+    private String[] binaries32;
+    private String[] hexas;
+
+    private TwoSCompConverterBench(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--") && i + 1 == args.length) {
+                invalidInput();
+            }
+            switch (arg) {
+                case "--seed":
+                    seed = getNumber(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = getNumber(args[++i]);
+                    break;
+                case "--iterations":
+                    iterations = getNumber(args[++i]);
+                    break;
+                default:
+                    if (arg.startsWith("-")) invalidInput();
+                    filters.add(arg);
+            }
+        }
+    }
+
+    private static int getNumber(String s) {
+        try {
+            int n = Integer.parseInt(s);
+            if (n >= 1) return n;
+        } catch (NumberFormatException e) {
+            // invalid
+        }
+        invalidInput();
+        return 0;
+    }
+
+    private static void invalidInput() {
+        throw new IllegalArgumentException("Invalid Input. Format: $ java TwoSCompConverterBench [--seed N] [--warmup seconds] [--iterations N] [filter ...]");
+    }
+
+    /**
+     * Build the inputs, the same ones from a run to another with the same seed
+     */
+    private void inputs() {
+        Random random = new Random(seed);
+        values = new int[SIZE];
+        nbBits = new int[SIZE];
+        binaries = new String[SIZE];
+        binaries32 = new String[SIZE];
+        hexas = new String[SIZE];
+
+        for (int i = 0; i < SIZE; i++) {
+            int positive = random.nextInt() >>> 1 >>> random.nextInt(31);
+            int value = random.nextInt(4) == 0 ? -positive : positive;
+            values[i] = value;
+
+            // the value bits and the sign bit, padded to a multiple of 4
+            int bits = 33 - Integer.numberOfLeadingZeros(value ^ (value >> 31));
+            bits = (bits + 3) / 4 * 4;
+            nbBits[i] = bits;
+
+            String bin32 = String.format("%32s", Integer.toBinaryString(value)).replace(' ', '0');
+            binaries32[i] = bin32;
+            binaries[i] = bin32.substring(32 - bits);
+            hexas[i] = "0x" + String.format("%08x", value).substring(8 - bits / 4);
+        }
+    }
+
+    private void run() {
+        System.out.printf("%s %s, warmup %d s, iterations %d, %d inputs, seed %d%n", System.getProperty("java.vm.name"),
+                System.getProperty("java.version"), warmup, iterations, SIZE, seed);
+        inputs();
+        System.out.println();
+        System.out.printf("  %-34s %10s %10s %10s %10s%n", "", "ns/op", "min", "max", "B/op");
+
+        report("to2SComplement(int, nbBits)", () -> {
+            long sum = 0;
+            for (int i = 0; i < SIZE; i++) {
+                sum += TwoSCompConverter.to2SComplement(values[i], nbBits[i])[0];
+            }
+            return sum;
+        });
+        report("to2SComplement(int, 32)", () -> {
+            long sum = 0;
+            for (int value : values) {
+                sum += TwoSCompConverter.to2SComplement(value, 32)[0];
+            }
+            return sum;
+        });
+        report("  Integer.toBinaryString(int)", () -> {
+            long sum = 0;
+            for (int value : values) {
+                sum += Integer.toBinaryString(value).length();
+            }
+            return sum;
+        });
+
+        report("twoSCompToDecimal(nbBits)", () -> {
+            long sum = 0;
+            for (String bin : binaries) {
+                sum += TwoSCompConverter.twoSCompToDecimal(bin);
+            }
+            return sum;
+        });
+        report("  Long.parseLong(nbBits, 2)", () -> {
+            long sum = 0;
+            for (String bin : binaries) {
+                int shift = 32 - bin.length();
+                sum += (int) Long.parseLong(bin, 2) << shift >> shift;
+            }
+            return sum;
+        });
+        report("twoSCompToDecimal(32 bits)", () -> {
+            long sum = 0;
+            for (String bin : binaries32) {
+                sum += TwoSCompConverter.twoSCompToDecimal(bin);
+            }
+            return sum;
+        });
+        report("  Long.parseLong(32 bits, 2)", () -> {
+            long sum = 0;
+            for (String bin : binaries32) {
+                sum += (int) Long.parseLong(bin, 2);
+            }
+            return sum;
+        });
+
+        report("hexaToBin(String)", () -> {
+            long sum = 0;
+            for (String hexa : hexas) {
+                sum += TwoSCompConverter.hexaToBin(hexa).length();
+            }
+            return sum;
+        });
+        report("  Integer.toBinaryString(parse)", () -> {
+            long sum = 0;
+            for (String hexa : hexas) {
+                sum += Integer.toBinaryString(Integer.parseUnsignedInt(hexa, 2, hexa.length(), 16)).length();
+            }
+            return sum;
+        });
+    }
+
+    private void report(String name, Benchmark benchmark) {
+        if (!filters.isEmpty() && filters.stream().noneMatch(name::contains)) {
+            return;
+        }
+
+        // how many runs make an iteration long enough, then more iterations until the JIT is done with
+        // the code: at least the warmup time, and until two iterations in a row take about the same time
+        int repeat = 1;
+        long start = System.nanoTime();
+        long previous = 0;
+        while (true) {
+            long time = System.nanoTime();
+            for (int r = 0; r < repeat; r++) {
+                sink += benchmark.run();
+            }
+            time = System.nanoTime() - time;
+            if (time < MIN_ITERATION_NANOS && repeat < 1 << 20) {
+                repeat = (int) Math.min(1 << 20, (long) repeat * MIN_ITERATION_NANOS / Math.max(1, time) + 1);
+                previous = 0;
+                continue;
+            }
+            long elapsed = System.nanoTime() - start;
+            boolean stable = Math.abs(time - previous) < previous / 20;
+            if (elapsed >= warmup * 1_000_000_000L && stable || elapsed >= warmup * MAX_WARMUP_FACTOR * 1_000_000_000L) {
+                break;
+            }
+            previous = time;
+        }
+
+        double[] times = new double[iterations];
+        long allocated = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytes = allocatedBytes();
+            long time = System.nanoTime();
+            for (int r = 0; r < repeat; r++) {
+                sink += benchmark.run();
+            }
+            time = System.nanoTime() - time;
+            allocated += allocatedBytes() - bytes;
+            times[i] = (double) time / repeat / SIZE;
+        }
+
+        Arrays.sort(times);
+        double median = times.length % 2 == 1 ? times[times.length / 2]
+                : (times[times.length / 2 - 1] + times[times.length / 2]) / 2;
+        String perOp = allocatedBytes() < 0 ? "n/a" : String.format("%.1f", (double) allocated / iterations / repeat / SIZE);
+        System.out.printf("  %-34s %10.1f %10.1f %10.1f %10s%n", name, median, times[0], times[times.length - 1], perOp);
+    }
+
+    /**
+     * @return the bytes allocated by this thread so far, negative if the JVM can't tell
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * main method
+     */
+    public static void main(String[] args) {
+        try {
+            new TwoSCompConverterBench(args).run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+}
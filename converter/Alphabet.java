@@ -0,0 +1,406 @@
+package converter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Description: Digits of any alphabet, for the base32, base58 and base62 IDs
+ *
+ * An alphabet is the chars of its digits, 2 to 64 of them, and a table of
+ * 256 bytes with the value of each char, so a char is decoded with one
+ * lookup. The numbers (long, as unsigned) are encoded and decoded like in
+ * Converter.
+ *
+ * The bytes are encoded the way these formats do:
+ *    - a radix power of two (base32) : the bits from the first one, a digit
+ *      for each group of bits (RFC 4648, without the padding). It is done
+ *      while reading, so it streams in linear time whatever the size.
+ *    - another radix (base58, base62) : the bytes are one big number, and
+ *      each leading zero byte gives one leading zero digit (Bitcoin). Each
+ *      digit depends on all the bytes, so it can't stream: a few hundred
+ *      bytes are divided in place on an int[], more go through BigConverter
+ *      in less than quadratic time, not by dividing the whole number again
+ *      for every digit.
+ *
+ */
+public final class Alphabet {
+
+	/**RFC 4648, the letters decoded in both cases
+	 */
+	public static final Alphabet BASE32 = new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ234567", true);
+
+	/**Bitcoin, without 0, O, I and l
+	 */
+	public static final Alphabet BASE58 = new Alphabet("123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz", false);
+
+	public static final Alphabet BASE62 = new Alphabet("0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz", false);
+
+	// the byte arrays up to that size are converted on an int[], the bigger ones with BigConverter
+	private static final int SMALL_BYTES = 256;
+
+	private final char[] digits;
+	// the value of each char as a digit, -1 if it is not a digit
+	private final byte[] values = new byte[256];
+	private final int radix;
+	// the number of bits of a digit if the radix is a power of two, 0 if not
+	private final int bits;
+	// the max unsigned long that can be multiplied by the radix
+	private final long limit;
+	// radix^k for each k that fits in an unsigned long, to count the digits of a number
+	private final long[] powers;
+	// the max number of digits m with radix^m in 31 bits, and radix^m
+	private final int groupDigits;
+	private final long groupValue;
+	// the max number of digits of a byte, log(256) / log(radix)
+	private final double digitsPerByte;
+
+	/**
+	 * @param digits are the chars of the digits, from 0 up, 2 to 64 different chars below 256
+	 * @param ignoreCase is true to decode the letters in both cases
+	 */
+	public Alphabet(String digits, boolean ignoreCase) {
+		if(digits.length() < Converter.MIN_RADIX || digits.length() > BigConverter.MAX_ALPHABET_RADIX) {
+			throw new IllegalArgumentException("Invalid alphabet size: " + digits.length());
+		}
+		this.digits = digits.toCharArray();
+		this.radix = digits.length();
+		this.bits = Integer.bitCount(radix) == 1 ? Integer.numberOfTrailingZeros(radix) : 0;
+		this.limit = Long.divideUnsigned(-1L, radix);
+		this.digitsPerByte = 8 / (Math.log(radix) / Math.log(2));
+
+		long[] powers = new long[64];
+		int count = 0;
+		for(long power=1;;power*=radix) {
+			powers[count++] = power;
+			if(Long.compareUnsigned(power, limit) > 0) {
+				break;
+			}
+		}
+		this.powers = Arrays.copyOf(powers, count);
+		int groupDigits = 1;
+		while(powers[groupDigits + 1] <= Integer.MAX_VALUE) {
+			groupDigits++;
+		}
+		this.groupDigits = groupDigits;
+		this.groupValue = powers[groupDigits];
+
+		Arrays.fill(values, (byte) -1);
+		for(int i=0;i<radix;i++) {
+			char c = this.digits[i];
+			if(c >= 256 || values[c] >= 0) {
+				throw new IllegalArgumentException("Invalid alphabet: \"" + digits + "\"");
+			}
+			values[c] = (byte) i;
+		}
+		if(ignoreCase) {
+			for(int i=0;i<radix;i++) {
+				char c = this.digits[i];
+				char other = Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c);
+				if(other != c && other < 256) {
+					if(values[other] >= 0) {
+						throw new IllegalArgumentException("Invalid alphabet, both cases of a letter: \"" + digits + "\"");
+					}
+					values[other] = (byte) i;
+				}
+			}
+		}
+	}
+
+	public int radix() {
+		return radix;
+	}
+
+	/**Write a number, as an unsigned long
+	 * @param value is the number
+	 * @param chars is where it is written, it needs up to 64 chars after offset
+	 * @param offset is the index of the first char
+	 * @return the index after the last char
+	 */
+	public int encode(long value, char[] chars, int offset) {
+		int length = 1;
+		while(length < powers.length && Long.compareUnsigned(value, powers[length]) >= 0) {
+			length++;
+		}
+
+		// a long division for each group of m digits, then int divisions inside the group (faster)
+		int i = offset + length;
+		long temp = value;
+		while(Long.compareUnsigned(temp, groupValue) >= 0) {
+			long quotient = temp < 0 ? Long.divideUnsigned(temp, groupValue) : temp / groupValue;
+			int group = (int) (temp - quotient * groupValue);
+			for(int d=0;d<groupDigits;d++) {
+				int next = group / radix;
+				chars[--i] = digits[group - next * radix];
+				group = next;
+			}
+			temp = quotient;
+		}
+		int rest = (int) temp;
+		do {
+			int next = rest / radix;
+			chars[--i] = digits[rest - next * radix];
+			rest = next;
+		} while(rest != 0);
+		return offset + length;
+	}
+
+	/**Write a number, as an unsigned long
+	 * @param value is the number
+	 * @return the digits
+	 */
+	public String encode(long value) {
+		char[] chars = new char[64];
+		return new String(chars, 0, encode(value, chars, 0));
+	}
+
+	/**Read a number, as an unsigned long
+	 * @param number contains the digits
+	 * @param from is the index of the first digit
+	 * @param to is the index after the last digit
+	 * @return the number
+	 * @throws NumberFormatException if a char is not a digit or the number doesn't fit in 64 bits
+	 */
+	public long decode(CharSequence number, int from, int to) {
+		if(from == to) {
+			throw invalidNumber(number);
+		}
+		long result = 0;
+		for(int i=from;i<to;i++) {
+			int digit = value(number.charAt(i));
+			if(digit < 0 || Long.compareUnsigned(result, limit) > 0) {
+				throw invalidNumber(number);
+			}
+			long next = result * radix + digit;
+			if(Long.compareUnsigned(next, result * radix) < 0) {
+				throw invalidNumber(number);
+			}
+			result = next;
+		}
+		return result;
+	}
+
+	/**Read a number, as an unsigned long
+	 * @param number is the digits
+	 * @return the number
+	 * @throws NumberFormatException if a char is not a digit or the number doesn't fit in 64 bits
+	 */
+	public long decode(CharSequence number) {
+		return decode(number, 0, number.length());
+	}
+
+	/**Encode bytes, see the description of the class
+	 * @param bytes are the bytes
+	 * @return the digits
+	 */
+	public String encodeBytes(byte[] bytes) {
+		if(bits != 0) {
+			char[] chars = new char[(int) (((long) bytes.length * 8 + bits - 1) / bits)];
+			BitEncoder encoder = new BitEncoder();
+			int length = encoder.encode(bytes, 0, bytes.length, chars, 0);
+			encoder.finish(chars, length);
+			return new String(chars);
+		}
+
+		int zeros = 0;
+		while(zeros < bytes.length && bytes[zeros] == 0) {
+			zeros++;
+		}
+		if(bytes.length - zeros > SMALL_BYTES) {
+			char[] leading = new char[zeros];
+			Arrays.fill(leading, digits[0]);
+			return new String(leading) + BigConverter.toString(new BigInteger(1, Arrays.copyOfRange(bytes, zeros, bytes.length)), radix, digits);
+		}
+
+		int[] magnitude = new int[(bytes.length - zeros + 3) / 4];
+		for(int i=bytes.length-1,j=magnitude.length*4-1;i>=zeros;i--,j--) {
+			magnitude[j >> 2] |= (bytes[i] & 0xff) << 8 * (3 - (j & 3));
+		}
+		// the leading zero digits of the zero bytes, then the number, written with leading zeros too
+		int width = (int) ((bytes.length - zeros) * digitsPerByte) + 1;
+		char[] chars = new char[zeros + width];
+		BigConverter.writeSmall(magnitude, radix, digits, chars, zeros, width);
+		int first = zeros;
+		while(first < chars.length && chars[first] == digits[0]) {
+			first++;
+		}
+		Arrays.fill(chars, first - zeros, first, digits[0]);
+		return new String(chars, first - zeros, chars.length - first + zeros);
+	}
+
+	/**Decode bytes, see the description of the class
+	 * @param number is the digits
+	 * @return the bytes
+	 * @throws NumberFormatException if a char is not a digit, or the bits left at the end of a radix
+	 * power of two are not zeros that only pad the last byte
+	 */
+	public byte[] decodeBytes(CharSequence number) {
+		if(bits != 0) {
+			byte[] bytes = new byte[(int) ((long) number.length() * bits / 8)];
+			BitDecoder decoder = new BitDecoder(number);
+			decoder.decode(number, 0, number.length(), bytes, 0);
+			decoder.finish();
+			return bytes;
+		}
+
+		int zeros = 0;
+		while(zeros < number.length() && number.charAt(zeros) == digits[0]) {
+			zeros++;
+		}
+		if(zeros == number.length()) {
+			return new byte[zeros];
+		}
+
+		byte[] magnitude = BigConverter.parse(number, zeros, number.length(), radix, values).toByteArray();
+		// without the sign byte of toByteArray()
+		int sign = magnitude[0] == 0 ? 1 : 0;
+		byte[] bytes = new byte[zeros + magnitude.length - sign];
+		System.arraycopy(magnitude, sign, bytes, zeros, magnitude.length - sign);
+		return bytes;
+	}
+
+	/**Encode a stream: a radix power of two is written while reading, another one
+	 * reads the whole stream first
+	 * @param in is the bytes, it is not closed
+	 * @param out is where the digits go
+	 * @throws IOException if the stream can't be read or the digits can't be written
+	 */
+	public void encodeBytes(InputStream in, Appendable out) throws IOException {
+		if(bits == 0) {
+			out.append(encodeBytes(in.readAllBytes()));
+			return;
+		}
+
+		byte[] bytes = new byte[1 << 13];
+		char[] chars = new char[bytes.length * 8 / bits + 1];
+		BitEncoder encoder = new BitEncoder();
+		int read;
+		while((read = in.read(bytes)) >= 0) {
+			out.append(CharBuffer.wrap(chars, 0, encoder.encode(bytes, 0, read, chars, 0)));
+		}
+		out.append(CharBuffer.wrap(chars, 0, encoder.finish(chars, 0)));
+	}
+
+	/**Decode a stream: a radix power of two is written while reading, another one
+	 * reads the whole stream first
+	 * @param in is the digits, it is not closed
+	 * @param out is where the bytes go
+	 * @throws IOException if the stream can't be read or the bytes can't be written
+	 * @throws NumberFormatException like decodeBytes(CharSequence)
+	 */
+	public void decodeBytes(Reader in, OutputStream out) throws IOException {
+		char[] chars = new char[1 << 13];
+		if(bits == 0) {
+			StringBuilder number = new StringBuilder();
+			int read;
+			while((read = in.read(chars)) >= 0) {
+				number.append(chars, 0, read);
+			}
+			out.write(decodeBytes(number));
+			return;
+		}
+
+		byte[] bytes = new byte[chars.length * bits / 8 + 1];
+		CharBuffer buffer = CharBuffer.wrap(chars);
+		BitDecoder decoder = new BitDecoder(buffer);
+		int read;
+		while((read = in.read(chars)) >= 0) {
+			out.write(bytes, 0, decoder.decode(buffer, 0, read, bytes, 0));
+		}
+		decoder.finish();
+	}
+
+	/**The bits of the bytes, a digit for each group, for a radix power of two
+	 */
+	private final class BitEncoder {
+		private int buffer;
+		private int count;
+
+		/**
+		 * @return the index after the last char written
+		 */
+		private int encode(byte[] bytes, int from, int to, char[] chars, int offset) {
+			int mask = radix - 1;
+			int i = offset;
+			for(int j=from;j<to;j++) {
+				buffer = buffer << 8 | (bytes[j] & 0xff);
+				count += 8;
+				while(count >= bits) {
+					count -= bits;
+					chars[i++] = digits[buffer >>> count & mask];
+				}
+			}
+			return i;
+		}
+
+		/**Write the last bits, padded with zeros
+		 */
+		private int finish(char[] chars, int offset) {
+			if(count > 0) {
+				chars[offset++] = digits[buffer << (bits - count) & (radix - 1)];
+				count = 0;
+			}
+			return offset;
+		}
+	}
+
+	/**The bits of the digits, a byte for each 8 of them, for a radix power of two
+	 */
+	private final class BitDecoder {
+		// for the messages
+		private final CharSequence number;
+		private int buffer;
+		private int count;
+
+		private BitDecoder(CharSequence number) {
+			this.number = number;
+		}
+
+		/**
+		 * @return the index after the last byte written
+		 */
+		private int decode(CharSequence chars, int from, int to, byte[] bytes, int offset) {
+			int i = offset;
+			for(int j=from;j<to;j++) {
+				int digit = value(chars.charAt(j));
+				if(digit < 0) {
+					throw invalidNumber(number);
+				}
+				buffer = buffer << bits | digit;
+				count += bits;
+				if(count >= 8) {
+					count -= 8;
+					bytes[i++] = (byte) (buffer >>> count);
+				}
+			}
+			return i;
+		}
+
+		/**Check that the bits left only pad the last byte
+		 */
+		private void finish() {
+			if(count >= bits || (buffer & ((1 << count) - 1)) != 0) {
+				throw invalidNumber(number);
+			}
+		}
+	}
+
+	private int value(char c) {
+		return c < 256 ? values[c] : -1;
+	}
+
+	private static NumberFormatException invalidNumber(CharSequence number) {
+		String text = number.length() > 40 ? number.subSequence(0, 40) + "..." : number.toString();
+		return new NumberFormatException("Invalid number: \"" + text + "\"");
+	}
+
+	@Override
+	public String toString() {
+		return new String(digits);
+	}
+
+}
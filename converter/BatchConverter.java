@@ -0,0 +1,312 @@
+package converter;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Description: Batch converter of files of numbers, one number per line
+ *
+ * The input is read through a channel in big chunks, each chunk cut after
+ * its last line break, the rest goes to the next chunk. The chunks are
+ * converted on all the cores with Converter.parse() and format() straight
+ * from and to bytes (BigConverter for the numbers too big for a long),
+ * and written in the order of the input, one write per chunk. Only a few
+ * chunks are in flight, so the memory stays bounded whatever the size of
+ * the input.
+ *
+ * An empty line gives an empty line. An invalid line gives an empty line
+ * too, so the output lines still match the input lines, and a message on
+ * stderr.
+ *
+ * Usage: java converter.BatchConverter [-t threads] radix newRadix [file ...]
+ * (stdin if no file or "-")
+ *
+ */
+public class BatchConverter {
+
+	public static final int CHUNK_SIZE = 1 << 22;
+
+	private final int radix;
+	private final int newRadix;
+	private final int threads;
+	private final int chunkSize;
+
+	/**An invalid line of a chunk
+	 */
+	private static final class InvalidLine {
+		private final int line;
+		private final String text;
+
+		private InvalidLine(int line, String text) {
+			this.line = line;
+			this.text = text;
+		}
+	}
+
+	/**A converted chunk
+	 */
+	private static final class Result {
+		private byte[] bytes;
+		private int length;
+		private int lines;
+		private final List<InvalidLine> invalid = new ArrayList<>();
+	}
+
+	/**
+	 * @param radix is the base of the input, 2 to 36
+	 * @param newRadix is the base of the output, 2 to 36
+	 * @param threads is the number of threads converting
+	 */
+	public BatchConverter(int radix, int newRadix, int threads) {
+		this(radix, newRadix, threads, CHUNK_SIZE);
+	}
+
+	/**
+	 * @param radix is the base of the input, 2 to 36
+	 * @param newRadix is the base of the output, 2 to 36
+	 * @param threads is the number of threads converting
+	 * @param chunkSize is the number of bytes read at once
+	 */
+	public BatchConverter(int radix, int newRadix, int threads, int chunkSize) {
+		if(radix < Converter.MIN_RADIX || radix > Converter.MAX_RADIX) {
+			throw new IllegalArgumentException("Invalid radix: " + radix);
+		}
+		if(newRadix < Converter.MIN_RADIX || newRadix > Converter.MAX_RADIX) {
+			throw new IllegalArgumentException("Invalid radix: " + newRadix);
+		}
+		if(threads < 1 || chunkSize < 1) {
+			throw new IllegalArgumentException("Invalid number of threads or chunk size");
+		}
+		this.radix = radix;
+		this.newRadix = newRadix;
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+	}
+
+	/**Convert all the lines of an input
+	 * @param name is the name of the input, for the messages of the invalid lines
+	 * @param in is the input
+	 * @param out is the output, it is not closed
+	 * @return the number of invalid lines
+	 * @throws IOException if the input can't be read or the output can't be written
+	 */
+	public long convert(String name, ReadableByteChannel in, WritableByteChannel out) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "batch-converter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		Deque<Future<Result>> pending = new ArrayDeque<>();
+		long[] lines = {0, 0}; // lines written, invalid lines
+
+		try {
+			byte[] chunk = new byte[chunkSize];
+			int length = 0;
+			boolean end = false;
+
+			while(!end) {
+				ByteBuffer buffer = ByteBuffer.wrap(chunk, length, chunk.length - length);
+				while(buffer.hasRemaining()) {
+					if(in.read(buffer) < 0) {
+						end = true;
+						break;
+					}
+				}
+				length = buffer.position();
+
+				int cut = end ? length : lastLineBreak(chunk, length) + 1;
+				if(cut == 0 && !end) {
+					// a line longer than the chunk
+					chunk = Arrays.copyOf(chunk, chunk.length * 2);
+					continue;
+				}
+
+				if(cut > 0) {
+					byte[] bytes = chunk;
+					int to = cut;
+					pending.add(executor.submit(() -> convert(bytes, 0, to)));
+
+					chunk = new byte[chunk.length];
+					System.arraycopy(bytes, cut, chunk, 0, length - cut);
+					length -= cut;
+				}
+
+				// two chunks per thread are enough to keep them busy while writing
+				while(pending.size() > threads * 2) {
+					write(name, pending.poll(), out, lines);
+				}
+			}
+
+			while(!pending.isEmpty()) {
+				write(name, pending.poll(), out, lines);
+			}
+			return lines[1];
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static int lastLineBreak(byte[] bytes, int length) {
+		for(int i=length-1;i>=0;i--) {
+			if(bytes[i] == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**Wait for a chunk and write it
+	 * @param lines are the lines written before and the invalid lines, they are updated
+	 */
+	private static void write(String name, Future<Result> future, WritableByteChannel out, long[] lines) throws IOException {
+		Result result;
+		try {
+			result = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted");
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+
+		for(InvalidLine invalid : result.invalid) {
+			System.err.println(name + ":" + (lines[0] + invalid.line + 1) + ": Invalid number \"" + invalid.text + "\"");
+		}
+		lines[0] += result.lines;
+		lines[1] += result.invalid.size();
+
+		ByteBuffer buffer = ByteBuffer.wrap(result.bytes, 0, result.length);
+		while(buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	/**Convert the lines of a chunk
+	 * @param bytes is the chunk
+	 * @param from is the index of its first byte
+	 * @param to is the index after its last byte
+	 * @return the converted lines, each one ending with '\n'
+	 */
+	private Result convert(byte[] bytes, int from, int to) {
+		Result result = new Result();
+		// the digits are about as many in both bases, it grows if not
+		byte[] output = new byte[to - from + Converter.MAX_LENGTH + 1];
+		int length = 0;
+
+		int start = from;
+		while(start < to) {
+			int lineEnd = start;
+			while(lineEnd < to && bytes[lineEnd] != '\n') {
+				lineEnd++;
+			}
+			int next = lineEnd + 1;
+
+			// without the spaces around it and the '\r' of the Windows files
+			int first = start;
+			while(lineEnd > first && isBlank(bytes[lineEnd - 1])) {
+				lineEnd--;
+			}
+			while(first < lineEnd && isBlank(bytes[first])) {
+				first++;
+			}
+
+			if(output.length - length < Converter.MAX_LENGTH + 1) {
+				output = Arrays.copyOf(output, output.length * 2);
+			}
+			if(first < lineEnd) {
+				try {
+					if(Converter.fitsInLong(bytes, first, lineEnd, radix)) {
+						long value = Converter.parse(bytes, first, lineEnd, radix);
+						length = Converter.format(value, newRadix, output, length);
+					}else{
+						byte[] big = BigConverter.convert(new String(bytes, first, lineEnd - first,
+								StandardCharsets.ISO_8859_1), radix, newRadix).getBytes(StandardCharsets.ISO_8859_1);
+						if(output.length - length < big.length + 1) {
+							output = Arrays.copyOf(output, Math.max(output.length * 2, length + big.length + 1));
+						}
+						System.arraycopy(big, 0, output, length, big.length);
+						length += big.length;
+					}
+				} catch (NumberFormatException e) {
+					result.invalid.add(new InvalidLine(result.lines, new String(bytes, first, lineEnd - first,
+							StandardCharsets.ISO_8859_1)));
+				}
+			}
+			output[length++] = '\n';
+			result.lines++;
+			start = next;
+		}
+
+		result.bytes = output;
+		result.length = length;
+		return result;
+	}
+
+	private static boolean isBlank(byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int i = 0;
+		BatchConverter converter;
+		try {
+			if(args.length > 1 && args[0].equals("-t")) {
+				threads = Integer.parseInt(args[1]);
+				i = 2;
+			}
+			if(args.length - i < 2) {
+				throw new IllegalArgumentException("Missing radix");
+			}
+			converter = new BatchConverter(Integer.parseInt(args[i]), Integer.parseInt(args[i + 1]), threads);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: java converter.BatchConverter [-t threads] radix newRadix [file ...]");
+			System.exit(2);
+			return;
+		}
+
+		long invalid = 0;
+		try (FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel()) {
+			if(args.length - i == 2) {
+				invalid += converter.convert("-", new FileInputStream(FileDescriptor.in).getChannel(), out);
+			}
+			for(int j=i+2;j<args.length;j++) {
+				if(args[j].equals("-")) {
+					invalid += converter.convert("-", new FileInputStream(FileDescriptor.in).getChannel(), out);
+				}else{
+					try (FileChannel in = FileChannel.open(Paths.get(args[j]), StandardOpenOption.READ)) {
+						invalid += converter.convert(args[j], in, out);
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.err.println(e);
+			System.exit(2);
+		}
+		System.exit(invalid == 0 ? 0 : 1);
+	}
+
+}
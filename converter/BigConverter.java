@@ -0,0 +1,473 @@
+package converter;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Description: Positional notation converter of numbers of any size
+ *
+ * The number is split in two halves at a power of the radix, each half is
+ * converted on its own and they are put back together with one
+ * multiplication (parse) or one division (toString). The powers are
+ * radix^(m * 2^k), kept in a cache, so the splits are always at the same
+ * places and every power is only computed once. BigInteger multiplies and
+ * divides big numbers in less than quadratic time (Karatsuba, Toom-Cook,
+ * Burnikel-Ziegler), so the whole conversion is less than quadratic, when
+ * going digit by digit is quadratic.
+ *
+ * The small parts (a few hundred digits) are converted on an int[] in place,
+ * m digits at a time, m being the max number of digits with radix^m in 31
+ * bits (9 in decimal). The digits are written straight at their place in one
+ * char[], the halves of the big numbers on the ForkJoinPool.
+ *
+ * new BigInteger(String, radix) goes digit group by digit group (quadratic),
+ * and BigInteger.toString(radix) splits like here but appends the parts to a
+ * StringBuilder one by one, so both are slower on big numbers.
+ *
+ */
+public class BigConverter {
+
+	// the parts of radix^(m * 2^BASE_LEVEL) digits or less are converted on an int[]
+	private static final int BASE_LEVEL = 5;
+
+	// the parts of more digits than that are converted in parallel
+	private static final int PARALLEL_DIGITS = 1 << 15;
+
+	private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+	// the max radix of the alphabets of Alphabet, which also convert through here
+	static final int MAX_ALPHABET_RADIX = 64;
+
+	// the number of digits m of a group, and radix^m, by radix
+	private static final int[] GROUP_DIGITS = new int[MAX_ALPHABET_RADIX + 1];
+	private static final int[] GROUP_VALUES = new int[MAX_ALPHABET_RADIX + 1];
+
+	// radix^(m * 2^k) by radix then k, computed when needed
+	private static final BigInteger[][] POWERS = new BigInteger[MAX_ALPHABET_RADIX + 1][0];
+
+	// from that size of divisor, a division is done with two multiplications by the
+	// reciprocal of the power instead (Toom-Cook is faster than Burnikel-Ziegler)
+	private static final int RECIPROCAL_BITS = 1 << 13;
+
+	// 2^(2b) / radix^(m * 2^k), b being the number of bits of the power, by radix then k
+	private static final BigInteger[][] RECIPROCALS = new BigInteger[MAX_ALPHABET_RADIX + 1][0];
+
+	static {
+		for(int radix=Converter.MIN_RADIX;radix<=MAX_ALPHABET_RADIX;radix++) {
+			long value = radix;
+			int digits = 1;
+			while(value * radix < Integer.MAX_VALUE) {
+				value *= radix;
+				digits++;
+			}
+			GROUP_DIGITS[radix] = digits;
+			GROUP_VALUES[radix] = (int) value;
+		}
+	}
+
+	private BigConverter() {
+	}
+
+	/**Parse a number of any size
+	 * @param number is an optional '-' or '+' then the digits, the letters in any case
+	 * @param radix is the base, 2 to 36
+	 * @return the number
+	 * @throws NumberFormatException if a char is not a digit of the radix
+	 */
+	public static BigInteger parse(CharSequence number, int radix) {
+		checkRadix(radix);
+		int length = number.length();
+		char sign = length > 0 ? number.charAt(0) : 0;
+		boolean negative = sign == '-';
+		int from = negative || sign == '+' ? 1 : 0;
+		if(from == length) {
+			throw invalidNumber(number);
+		}
+
+		BigInteger value = parse(number, from, length, radix, Converter.VALUES);
+		return negative ? value.negate() : value;
+	}
+
+	/**Parse digits without a sign
+	 * @param values are the values of the chars as digits, -1 if they are not one
+	 */
+	static BigInteger parse(CharSequence number, int from, int to, int radix, byte[] values) {
+		int length = to - from;
+		int level = BASE_LEVEL;
+		while(width(radix, level) < length) {
+			level++;
+		}
+		if(level == BASE_LEVEL) {
+			return parseSmall(number, from, to, radix, values);
+		}
+		return length > PARALLEL_DIGITS
+				? ForkJoinPool.commonPool().invoke(new ParseTask(number, from, to, radix, values, level))
+				: new ParseTask(number, from, to, radix, values, level).compute();
+	}
+
+	/**Parse the digits from to, with level the smallest k where they fit in m * 2^k digits
+	 */
+	private static final class ParseTask extends RecursiveTask<BigInteger> {
+		private static final long serialVersionUID = 1L;
+
+		private final CharSequence number;
+		private final int from;
+		private final int to;
+		private final int radix;
+		private final byte[] values;
+		private final int level;
+
+		private ParseTask(CharSequence number, int from, int to, int radix, byte[] values, int level) {
+			this.number = number;
+			this.from = from;
+			this.to = to;
+			this.radix = radix;
+			this.values = values;
+			this.level = level;
+		}
+
+		@Override
+		protected BigInteger compute() {
+			if(level <= BASE_LEVEL) {
+				return parseSmall(number, from, to, radix, values);
+			}
+
+			// the low half has exactly m * 2^(k-1) digits, the high half the rest
+			int middle = to - width(radix, level - 1);
+			int highLevel = level - 1;
+			while(highLevel > BASE_LEVEL && width(radix, highLevel - 1) >= middle - from) {
+				highLevel--;
+			}
+			ParseTask high = new ParseTask(number, from, middle, radix, values, highLevel);
+			ParseTask low = new ParseTask(number, middle, to, radix, values, level - 1);
+
+			BigInteger lowValue;
+			BigInteger highValue;
+			if(to - from > PARALLEL_DIGITS) {
+				high.fork();
+				lowValue = low.compute();
+				highValue = high.join();
+			}else{
+				highValue = high.compute();
+				lowValue = low.compute();
+			}
+			return highValue.multiply(power(radix, level - 1)).add(lowValue);
+		}
+	}
+
+	/**Parse a few hundred digits on an int[], a group of m digits at a time
+	 */
+	private static BigInteger parseSmall(CharSequence number, int from, int to, int radix, byte[] values) {
+		int groupDigits = GROUP_DIGITS[radix];
+		// 31 bits per group at most, and one more int for the carry
+		int[] magnitude = new int[((to - from) / groupDigits + 1) * 31 / 32 + 2];
+		int start = magnitude.length - 1;
+
+		int end = from + (to - from) % groupDigits;
+		if(end == from) {
+			end += groupDigits;
+		}
+		int multiplier = pow(radix, end - from);
+		for(int i=from;i<to;) {
+			int group = 0;
+			for(;i<end;i++) {
+				char c = number.charAt(i);
+				int digit = c < values.length ? values[c] : -1;
+				if(digit < 0 || digit >= radix) {
+					throw invalidNumber(number);
+				}
+				group = group * radix + digit;
+			}
+
+			// magnitude = magnitude * multiplier + group
+			long carry = group;
+			for(int j=magnitude.length-1;j>=start;j--) {
+				long product = (magnitude[j] & 0xffffffffL) * multiplier + carry;
+				magnitude[j] = (int) product;
+				carry = product >>> 32;
+			}
+			if(carry != 0) {
+				magnitude[--start] = (int) carry;
+			}
+
+			end += groupDigits;
+			multiplier = GROUP_VALUES[radix];
+		}
+		return toBigInteger(magnitude, start);
+	}
+
+	private static BigInteger toBigInteger(int[] magnitude, int start) {
+		byte[] bytes = new byte[(magnitude.length - start) * 4];
+		for(int i=start,j=0;i<magnitude.length;i++,j+=4) {
+			int word = magnitude[i];
+			bytes[j] = (byte) (word >>> 24);
+			bytes[j + 1] = (byte) (word >>> 16);
+			bytes[j + 2] = (byte) (word >>> 8);
+			bytes[j + 3] = (byte) word;
+		}
+		return new BigInteger(1, bytes);
+	}
+
+	/**Write a number of any size
+	 * @param value is the number
+	 * @param radix is the base, 2 to 36
+	 * @return the number in the radix, the letters in upper case
+	 */
+	public static String toString(BigInteger value, int radix) {
+		checkRadix(radix);
+		return toString(value, radix, DIGITS);
+	}
+
+	/**
+	 * @param digits are the chars of the digits
+	 */
+	static String toString(BigInteger value, int radix, char[] digits) {
+		BigInteger magnitude = value.abs();
+
+		// an upper bound of the number of digits, so there is no need of radix^(m * 2^k) bigger than the number
+		long maxDigits = (long) (magnitude.bitLength() / (Math.log(radix) / Math.log(2))) + 2;
+		int level = BASE_LEVEL;
+		while(width(radix, level) < maxDigits) {
+			level++;
+		}
+
+		// written with the leading zeros of m * 2^k digits, one more char for the sign
+		int width = width(radix, level);
+		char[] chars = new char[width + 1];
+		WriteTask task = new WriteTask(magnitude, radix, digits, level, chars, 1, true);
+		if(width > PARALLEL_DIGITS) {
+			ForkJoinPool.commonPool().invoke(task);
+		}else{
+			task.compute();
+		}
+
+		int first = 1;
+		while(first < width && chars[first] == digits[0]) {
+			first++;
+		}
+		if(value.signum() < 0) {
+			chars[--first] = '-';
+		}
+		return new String(chars, first, chars.length - first);
+	}
+
+	/**Write a number smaller than radix^(m * 2^level) in exactly m * 2^level digits
+	 */
+	private static final class WriteTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final BigInteger value;
+		private final int radix;
+		private final char[] digits;
+		private final int level;
+		private final char[] chars;
+		private final int offset;
+		// true for the whole number, its division is the only one by that power
+		private final boolean top;
+
+		private WriteTask(BigInteger value, int radix, char[] digits, int level, char[] chars, int offset, boolean top) {
+			this.value = value;
+			this.radix = radix;
+			this.digits = digits;
+			this.level = level;
+			this.chars = chars;
+			this.offset = offset;
+			this.top = top;
+		}
+
+		@Override
+		protected void compute() {
+			int width = width(radix, level);
+			if(value.signum() == 0) {
+				java.util.Arrays.fill(chars, offset, offset + width, digits[0]);
+				return;
+			}
+			if(level <= BASE_LEVEL) {
+				writeSmall(magnitude(value), radix, digits, chars, offset, width);
+				return;
+			}
+
+			BigInteger[] halves = divideAndRemainder(value, radix, level - 1, !top);
+			WriteTask high = new WriteTask(halves[0], radix, digits, level - 1, chars, offset, false);
+			WriteTask low = new WriteTask(halves[1], radix, digits, level - 1, chars, offset + width / 2, false);
+			if(width > PARALLEL_DIGITS) {
+				invokeAll(high, low);
+			}else{
+				high.compute();
+				low.compute();
+			}
+		}
+	}
+
+	/**Divide by radix^(m * 2^level) a number smaller than its square
+	 * @param reused is false if it is the only division by that power, then it is not worth
+	 * computing its reciprocal
+	 * @return the quotient and the remainder
+	 */
+	private static BigInteger[] divideAndRemainder(BigInteger value, int radix, int level, boolean reused) {
+		BigInteger divisor = power(radix, level);
+		int bits = divisor.bitLength();
+		BigInteger reciprocal = bits < RECIPROCAL_BITS ? null : reciprocal(radix, level, reused);
+		if(reciprocal == null) {
+			return value.divideAndRemainder(divisor);
+		}
+
+		// value * 2^(2b) / divisor / 2^(2b), the quotient give or take a few units
+		BigInteger quotient = value.shiftRight(bits - 1).multiply(reciprocal).shiftRight(bits + 1);
+		BigInteger remainder = value.subtract(quotient.multiply(divisor));
+		while(remainder.signum() < 0) {
+			remainder = remainder.add(divisor);
+			quotient = quotient.subtract(BigInteger.ONE);
+		}
+		while(remainder.compareTo(divisor) >= 0) {
+			remainder = remainder.subtract(divisor);
+			quotient = quotient.add(BigInteger.ONE);
+		}
+		return new BigInteger[] {quotient, remainder};
+	}
+
+	/**
+	 * @return the magnitude of a positive number as big endian ints
+	 */
+	private static int[] magnitude(BigInteger value) {
+		byte[] bytes = value.toByteArray();
+		int[] magnitude = new int[(bytes.length + 3) / 4];
+		for(int i=bytes.length-1,j=magnitude.length-1;i>=0;i-=4,j--) {
+			int word = bytes[i] & 0xff;
+			if(i >= 1) word |= (bytes[i - 1] & 0xff) << 8;
+			if(i >= 2) word |= (bytes[i - 2] & 0xff) << 16;
+			if(i >= 3) word |= (bytes[i - 3] & 0xff) << 24;
+			magnitude[j] = word;
+		}
+		return magnitude;
+	}
+
+	/**Write a few hundred digits from an int[], divided in place by radix^m for each group
+	 * @param magnitude is the number as big endian ints, it is zero after
+	 * @param digits are the chars of the digits
+	 * @param width is the number of digits written, with leading zeros, enough for the number
+	 */
+	static void writeSmall(int[] magnitude, int radix, char[] digits, char[] chars, int offset, int width) {
+		int groupDigits = GROUP_DIGITS[radix];
+		long divisor = GROUP_VALUES[radix];
+		int start = 0;
+		int i = offset + width;
+		while(start < magnitude.length && i > offset) {
+			// a / and a * instead of a / and a %, a division is much slower than a multiplication
+			long remainder = 0;
+			for(int j=start;j<magnitude.length;j++) {
+				long current = remainder << 32 | (magnitude[j] & 0xffffffffL);
+				long quotient = current / divisor;
+				magnitude[j] = (int) quotient;
+				remainder = current - quotient * divisor;
+			}
+			while(start < magnitude.length && magnitude[start] == 0) {
+				start++;
+			}
+
+			int group = (int) remainder;
+			for(int d=0;d<groupDigits && i>offset;d++) {
+				int next = group / radix;
+				chars[--i] = digits[group - next * radix];
+				group = next;
+			}
+		}
+		while(i > offset) {
+			chars[--i] = digits[0];
+		}
+	}
+
+	/**Convert a number of any size from a base to another
+	 * @param number is the number
+	 * @param radix is its base, 2 to 36
+	 * @param newRadix is the new base, 2 to 36
+	 * @return the number in the new base
+	 * @throws NumberFormatException if the number is not a number of the radix
+	 */
+	public static String convert(String number, int radix, int newRadix) {
+		checkRadix(newRadix);
+		return toString(parse(number, radix), newRadix);
+	}
+
+	/**
+	 * @return m * 2^level, the number of digits of the parts of a level
+	 */
+	private static int width(int radix, int level) {
+		long width = (long) GROUP_DIGITS[radix] << level;
+		return width > Integer.MAX_VALUE - 1 ? Integer.MAX_VALUE - 1 : (int) width;
+	}
+
+	/**
+	 * @return radix^(m * 2^level), from the cache
+	 */
+	private static synchronized BigInteger power(int radix, int level) {
+		BigInteger[] powers = POWERS[radix];
+		if(level >= powers.length) {
+			int known = powers.length;
+			powers = java.util.Arrays.copyOf(powers, level + 1);
+			for(int k=known;k<=level;k++) {
+				powers[k] = k == 0 ? BigInteger.valueOf(GROUP_VALUES[radix]) : powers[k - 1].multiply(powers[k - 1]);
+			}
+			POWERS[radix] = powers;
+		}
+		return powers[level];
+	}
+
+	/**
+	 * @param compute is false to only look in the cache
+	 * @return 2^(2b) / radix^(m * 2^level), b being the number of bits of the power, from the cache
+	 */
+	private static synchronized BigInteger reciprocal(int radix, int level, boolean compute) {
+		BigInteger[] reciprocals = RECIPROCALS[radix];
+		if(level >= reciprocals.length) {
+			reciprocals = java.util.Arrays.copyOf(reciprocals, level + 1);
+			RECIPROCALS[radix] = reciprocals;
+		}
+		if(reciprocals[level] == null && compute) {
+			reciprocals[level] = reciprocal(power(radix, level));
+		}
+		return reciprocals[level];
+	}
+
+	/**Newton's method, from the reciprocal of the upper half of the divisor
+	 * @return 2^(2b) / divisor, b being the number of bits of the divisor, give or take a few units
+	 */
+	private static BigInteger reciprocal(BigInteger divisor) {
+		int bits = divisor.bitLength();
+		if(bits < RECIPROCAL_BITS) {
+			return BigInteger.ONE.shiftLeft(2 * bits).divide(divisor);
+		}
+
+		// r = 2^(2h) / top is about 2^(b+h) / divisor, to h bits
+		int half = bits / 2 + 32;
+		BigInteger reciprocal = reciprocal(divisor.shiftRight(bits - half));
+
+		// error = 2^(2b) - divisor * r * 2^(b-h), and r * 2^(b-h) + r * error / 2^(b+h) is the next one,
+		// the low bits of the error make no difference
+		BigInteger error = BigInteger.ONE.shiftLeft(2 * bits).subtract(divisor.multiply(reciprocal).shiftLeft(bits - half));
+		BigInteger correction = reciprocal.multiply(error.shiftRight(bits - 8)).shiftRight(half + 8);
+		return reciprocal.shiftLeft(bits - half).add(correction);
+	}
+
+	private static int pow(int radix, int exponent) {
+		int value = 1;
+		for(int i=0;i<exponent;i++) {
+			value *= radix;
+		}
+		return value;
+	}
+
+	private static void checkRadix(int radix) {
+		if(radix < Converter.MIN_RADIX || radix > Converter.MAX_RADIX) {
+			throw new IllegalArgumentException("Invalid radix: " + radix);
+		}
+	}
+
+	private static NumberFormatException invalidNumber(CharSequence number) {
+		String text = number.length() > 40 ? number.subSequence(0, 40) + "..." : number.toString();
+		return new NumberFormatException("Invalid number: \"" + text + "\"");
+	}
+
+}
@@ -0,0 +1,242 @@
+package converter;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Description: Bounded cache of the formatted numbers, in front of Converter
+ *
+ * When a few values make most of the conversions, their text is kept
+ * instead of being formatted (and allocated) again. The entries are in
+ * open addressing tables of primitive keys, a long[] for the values and a
+ * byte[] for the radixes, so a lookup doesn't box anything. A key has a
+ * window of 8 slots from its hash; when they are all used, one of them is
+ * evicted with CLOCK (second chance): a hit sets the referenced bit of its
+ * slot, and the first slot of the window without it goes, the bits before
+ * it cleared on the way. The number of slots comes from the memory budget
+ * and never grows.
+ *
+ * The tables are split in stripes, each one with its own lock, so threads
+ * converting different values seldom wait for each other. A lookup reads
+ * the slots without the lock (StampedLock optimistic read), and only
+ * takes it when an insert came in between.
+ *
+ * A number is parsed before the lookup, so the key is the value and the
+ * new radix: the radix it was written in doesn't change the result, and
+ * "255" in decimal and "FF" in hexadecimal share the same entry.
+ *
+ */
+public class ConversionCache {
+
+	/**The bytes counted for an entry: the key, the radix, the referenced bit,
+	 * the reference and a String of MAX_LENGTH chars, so the budget is never exceeded
+	 */
+	public static final int ENTRY_BYTES = 8 + 1 + 1 + 4 + 24 + 16 + Converter.MAX_LENGTH;
+
+	private static final int WINDOW = 8;
+
+	private final Stripe[] stripes;
+	private final int stripeShift;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**A part of the cache, with its own lock, the reads don't take it unless a write is going on
+	 */
+	private static final class Stripe {
+		private final long[] values;
+		private final byte[] radixes; // 0 for an empty slot
+		private final boolean[] referenced;
+		private final String[] texts;
+		private final int mask;
+		private final StampedLock lock = new StampedLock();
+
+		private Stripe(int slots) {
+			values = new long[slots];
+			radixes = new byte[slots];
+			referenced = new boolean[slots];
+			texts = new String[slots];
+			mask = slots - 1;
+		}
+
+		private String get(long value, int radix, int slot) {
+			// without the lock, then again with it if a put came in between
+			long stamp = lock.tryOptimisticRead();
+			String text = find(value, radix, slot);
+			if(lock.validate(stamp)) {
+				return text;
+			}
+			stamp = lock.readLock();
+			try {
+				return find(value, radix, slot);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+
+		private String find(long value, int radix, int slot) {
+			for(int i=0;i<WINDOW;i++) {
+				int j = (slot + i) & mask;
+				if(radixes[j] == radix && values[j] == value) {
+					// a lost update only costs a second chance
+					referenced[j] = true;
+					return texts[j];
+				}
+			}
+			return null;
+		}
+
+		private void put(long value, int radix, int slot, String text) {
+			long stamp = lock.writeLock();
+			try {
+				insert(value, radix, slot, text);
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		private void insert(long value, int radix, int slot, String text) {
+			int victim = -1;
+			for(int i=0;i<WINDOW;i++) {
+				int j = (slot + i) & mask;
+				if(radixes[j] == radix && values[j] == value) {
+					// put by another thread since the miss
+					return;
+				}
+				if(victim < 0 && radixes[j] == 0) {
+					victim = j;
+				}
+			}
+
+			if(victim < 0) {
+				// second chance, a full turn clears all the bits so the first slot of the window goes
+				for(int i=0;i<=WINDOW;i++) {
+					int j = (slot + i % WINDOW) & mask;
+					if(!referenced[j]) {
+						victim = j;
+						break;
+					}
+					referenced[j] = false;
+				}
+			}
+
+			values[victim] = value;
+			radixes[victim] = (byte) radix;
+			referenced[victim] = false;
+			texts[victim] = text;
+		}
+
+		private void clear() {
+			long stamp = lock.writeLock();
+			try {
+				Arrays.fill(radixes, (byte) 0);
+				Arrays.fill(referenced, false);
+				Arrays.fill(texts, null);
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+	}
+
+	/**
+	 * @param maxBytes is the memory budget, ENTRY_BYTES per entry
+	 */
+	public ConversionCache(long maxBytes) {
+		this(maxBytes, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	/**
+	 * @param maxBytes is the memory budget, ENTRY_BYTES per entry
+	 * @param stripes is the number of locks, rounded up to a power of two
+	 */
+	public ConversionCache(long maxBytes, int stripes) {
+		if(stripes < 1 || stripes > 1 << 16) {
+			throw new IllegalArgumentException("Invalid number of stripes: " + stripes);
+		}
+		int stripeCount = Integer.highestOneBit(stripes * 2 - 1);
+		// a power of two of slots per stripe, at least a window
+		long entries = maxBytes / ENTRY_BYTES / stripeCount;
+		if(entries < WINDOW) {
+			throw new IllegalArgumentException("Memory budget too small: " + maxBytes);
+		}
+		int slots = (int) Long.highestOneBit(Math.min(entries, 1 << 30));
+
+		this.stripes = new Stripe[stripeCount];
+		for(int i=0;i<stripeCount;i++) {
+			this.stripes[i] = new Stripe(slots);
+		}
+		stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+	}
+
+	/**Write a number, from the cache if it is there
+	 * @param value is the number
+	 * @param radix is the base, 2 to 36
+	 * @return the number in the radix, the letters in upper case, like Converter.toString()
+	 */
+	public String toString(long value, int radix) {
+		if(radix < Converter.MIN_RADIX || radix > Converter.MAX_RADIX) {
+			throw new IllegalArgumentException("Invalid radix: " + radix);
+		}
+		long hash = (value ^ (long) radix << 58) * 0x9E3779B97F4A7C15L;
+		hash ^= hash >>> 29;
+		// the high bits pick the stripe, the low ones the slot
+		Stripe stripe = stripes[stripeShift == 64 ? 0 : (int) (hash >>> stripeShift)];
+		int slot = (int) hash;
+
+		String text = stripe.get(value, radix, slot);
+		if(text != null) {
+			hits.increment();
+			return text;
+		}
+		misses.increment();
+
+		text = Converter.toString(value, radix);
+		stripe.put(value, radix, slot, text);
+		return text;
+	}
+
+	/**Convert a number from a base to another, from the cache if it fits in a long
+	 * @param number is the number
+	 * @param radix is its base, 2 to 36
+	 * @param newRadix is the new base, 2 to 36
+	 * @return the number in the new base, like Converter.convert()
+	 * @throws NumberFormatException if the number is not a number of the radix
+	 */
+	public String convert(String number, int radix, int newRadix) {
+		// the numbers too big for a long are not cached
+		if(Converter.fitsInLong(number, radix)) {
+			return toString(Converter.parse(number, radix), newRadix);
+		}
+		return Converter.convert(number, radix, newRadix);
+	}
+
+	/**
+	 * @return the number of lookups that found their entry
+	 */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of lookups that formatted the number
+	 */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the max number of entries
+	 */
+	public int capacity() {
+		return stripes.length * stripes[0].texts.length;
+	}
+
+	/**Remove all the entries, the counters are kept
+	 */
+	public void clear() {
+		for(Stripe stripe : stripes) {
+			stripe.clear();
+		}
+	}
+
+}
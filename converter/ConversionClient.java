@@ -0,0 +1,250 @@
+package converter;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Description: Client of ConversionServer
+ *
+ * The requests of a batch are all sent without waiting for the answers:
+ * a thread writes them while the calling one reads the answers, so the
+ * server always has the next requests and neither side blocks the other
+ * when the batch is bigger than the socket buffers.
+ *
+ * From a script, one client run for all the conversions replaces a JVM
+ * per conversion, the requests given as arguments or on stdin, one per
+ * line, and the answers printed one per line in the same order. The
+ * protocol is plain text, so a shell can also talk to the server without
+ * any JVM (e.g. with nc, see ConversionServer).
+ *
+ * Usage: java converter.ConversionClient [--port N | --unix path] [request ...]
+ * (exit status 1 if an answer is an error)
+ *
+ */
+public class ConversionClient implements Closeable {
+
+	private final LineChannel lines;
+
+	/**The requests of a pipeline
+	 */
+	private interface Requests {
+		/**
+		 * @return the next request, null after the last one
+		 */
+		String next() throws IOException;
+
+		/**
+		 * @return true if the next request is there right away, so it goes with this one
+		 */
+		boolean ready() throws IOException;
+	}
+
+	/**
+	 * @param address is the TCP address or the Unix socket of the server
+	 * @throws IOException if the server can't be reached
+	 */
+	public ConversionClient(SocketAddress address) throws IOException {
+		SocketChannel channel = SocketChannel.open(address instanceof UnixDomainSocketAddress
+				? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET);
+		try {
+			channel.connect(address);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		lines = new LineChannel(channel, false);
+	}
+
+	/**Send a request and wait for its answer
+	 * @param request is a line of the protocol
+	 * @return the answer, "OK" and the result or "ERR" and the reason
+	 * @throws IOException if the server is gone
+	 * @throws IllegalArgumentException if the request is not one line of chars up to 0xFF, nothing is sent then
+	 */
+	public String request(String request) throws IOException {
+		lines.writeLine(request);
+		lines.flush();
+		return answer();
+	}
+
+	/**Send a batch of requests, pipelined
+	 * @param requests are lines of the protocol, without "quit"
+	 * @return the answers, in the same order
+	 * @throws IOException if the server is gone
+	 * @throws IllegalArgumentException if a request is not one line of chars up to 0xFF, nothing is sent then
+	 */
+	public List<String> request(List<String> requests) throws IOException {
+		// one line each, or the number of answers to wait for would be wrong
+		for(String request : requests) {
+			LineChannel.check(request);
+		}
+		List<String> answers = new ArrayList<>(requests.size());
+		int[] next = {0};
+		pipeline(new Requests() {
+			@Override
+			public String next() {
+				return next[0] < requests.size() ? requests.get(next[0]++) : null;
+			}
+
+			@Override
+			public boolean ready() {
+				return next[0] < requests.size();
+			}
+		}, requests.size(), answers::add);
+		return answers;
+	}
+
+	/**Send the requests of a reader, one per line
+	 */
+	private static Requests requests(BufferedReader reader) {
+		return new Requests() {
+			@Override
+			public String next() throws IOException {
+				return reader.readLine();
+			}
+
+			@Override
+			public boolean ready() throws IOException {
+				return reader.ready();
+			}
+		};
+	}
+
+	/**Send the requests from a thread while the answers are read by this one
+	 * @param requests are the lines to send
+	 * @param count is the number of answers to read, -1 to read them until the server closes
+	 *        (the output is shut down after the last request)
+	 * @param answers gets the answers
+	 */
+	private void pipeline(Requests requests, int count, Consumer<String> answers) throws IOException {
+		IOException[] error = new IOException[1];
+		Thread writer = new Thread(() -> {
+			try {
+				String request;
+				while((request = requests.next()) != null) {
+					lines.writeLine(request);
+					// the requests still coming go with the next ones
+					if(!requests.ready()) {
+						lines.flush();
+					}
+				}
+				if(count < 0) {
+					lines.shutdownOutput();
+				}else{
+					lines.flush();
+				}
+			} catch (IOException e) {
+				error[0] = e;
+			}
+		}, "conversion-client");
+		writer.setDaemon(true);
+		writer.start();
+
+		try {
+			for(int i=0;count<0||i<count;i++) {
+				String answer = lines.readLine(Integer.MAX_VALUE - 8);
+				if(answer == null) {
+					if(count < 0) {
+						break;
+					}
+					throw new IOException("Connection closed by the server");
+				}
+				answers.accept(answer);
+			}
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted");
+		} catch (IOException e) {
+			// the cause is more likely on the side that wrote
+			throw error[0] != null ? error[0] : e;
+		}
+		if(error[0] != null) {
+			throw error[0];
+		}
+	}
+
+	private String answer() throws IOException {
+		String answer = lines.readLine(Integer.MAX_VALUE - 8);
+		if(answer == null) {
+			throw new IOException("Connection closed by the server");
+		}
+		return answer;
+	}
+
+	@Override
+	public void close() throws IOException {
+		lines.close();
+	}
+
+	public static void main(String[] args) {
+		SocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), ConversionServer.DEFAULT_PORT);
+		int i = 0;
+		try {
+			for(;i<args.length&&args[i].startsWith("--");i+=2) {
+				if(i + 1 == args.length) {
+					throw new IllegalArgumentException("Missing value of " + args[i]);
+				}
+				if(args[i].equals("--port")) {
+					address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[i + 1]));
+				}else if(args[i].equals("--unix")) {
+					address = UnixDomainSocketAddress.of(args[i + 1]);
+				}else{
+					throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: java converter.ConversionClient [--port N | --unix path] [request ...]");
+			System.exit(2);
+			return;
+		}
+
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+		boolean[] failed = {false};
+		Consumer<String> print = answer -> {
+			failed[0] |= answer.startsWith("ERR");
+			out.println(answer);
+		};
+		try (ConversionClient client = new ConversionClient(address)) {
+			if(i < args.length) {
+				List<String> requests = new ArrayList<>();
+				for(;i<args.length;i++) {
+					requests.add(args[i]);
+				}
+				client.request(requests).forEach(print);
+			}else{
+				client.pipeline(requests(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.ISO_8859_1), 1 << 16)),
+						-1, print);
+			}
+		} catch (IOException e) {
+			out.flush();
+			System.err.println(e);
+			System.exit(2);
+		} catch (IllegalArgumentException e) {
+			// a request that can't be sent as one line
+			System.err.println(e.getMessage());
+			System.exit(2);
+		}
+		out.flush();
+		System.exit(failed[0] ? 1 : 0);
+	}
+
+}
@@ -0,0 +1,307 @@
+package converter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Description: Conversion daemon, a line protocol over a TCP or Unix socket
+ *
+ * A JVM that stays up, so a script pays the start of the JVM once instead
+ * of once per conversion. Each connection has its own thread, a virtual
+ * one if the JVM has them (found by reflection, a platform thread on the
+ * JDKs before 21). A request is one line, its answer is one line, in the
+ * same order. A client can send a whole batch without waiting: the answers
+ * are written in the buffer and only sent when the server has to wait for
+ * more input, so a batch is answered in a few writes.
+ *
+ * Requests:
+ *     convert radix newRadix number  ->  OK number       (Converter.convert(), any size)
+ *     twos input                     ->  OK decimal binary hexadecimal binary32 hexadecimal32
+ *                                        (the input of TwoSCompConverter: 10, -256, b10111, 0xF0)
+ *     stats                          ->  OK hits misses  (of the cache, 0 0 without it)
+ *     ping                           ->  OK
+ *     quit                               closes the connection
+ * An invalid request gets "ERR message" and the connection goes on.
+ *
+ * Usage: java converter.ConversionServer [--cache bytes] [--port N | --unix path]
+ * (port 7036 of the loopback by default)
+ *
+ */
+public class ConversionServer implements Closeable {
+
+	public static final int DEFAULT_PORT = 7036;
+
+	/**The max number of chars of a request, a longer one closes the connection
+	 */
+	public static final int MAX_LINE = 1 << 20;
+
+	private final ServerSocketChannel server;
+	private final ConversionCache cache;
+	private final ExecutorService executor;
+
+	/**
+	 * @param address is the TCP address or the Unix socket to listen on, a file left there is removed
+	 * @param cache is the cache of the conversions, null for none
+	 * @throws IOException if the address can't be bound
+	 */
+	public ConversionServer(SocketAddress address, ConversionCache cache) throws IOException {
+		if(address instanceof UnixDomainSocketAddress) {
+			Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+			server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		}else{
+			server = ServerSocketChannel.open();
+		}
+		server.bind(address);
+		this.cache = cache;
+		this.executor = newExecutor();
+	}
+
+	/**Virtual threads if the JVM has them, found by reflection so it still compiles with older JDKs
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "conversion-server");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * @return the address it listens on
+	 */
+	public SocketAddress address() throws IOException {
+		return server.getLocalAddress();
+	}
+
+	/**Accept the connections until it is closed
+	 */
+	public void serve() throws IOException {
+		while(true) {
+			SocketChannel channel;
+			try {
+				channel = server.accept();
+			} catch (ClosedChannelException e) {
+				return;
+			}
+			executor.execute(() -> serve(channel));
+		}
+	}
+
+	private void serve(SocketChannel channel) {
+		// the answers of a batch go together, they are sent when it waits for more requests
+		try (LineChannel lines = new LineChannel(channel, true)) {
+			try {
+				String request;
+				while((request = lines.readLine(MAX_LINE)) != null && !request.trim().equals("quit")) {
+					String answer = answer(request);
+					try {
+						lines.writeLine(answer);
+					} catch (IllegalArgumentException e) {
+						// e.g. a '\r' of the request in the message, the answer must stay one line
+						lines.writeLine("ERR " + e.getMessage());
+					}
+				}
+			} catch (LineChannel.LineTooLongException e) {
+				lines.writeLine("ERR " + e.getMessage());
+			}
+			lines.flush();
+		} catch (IOException e) {
+			// the client is gone, nothing to answer
+		}
+	}
+
+	/**Answer a request
+	 * @param request is a line of the protocol
+	 * @return "OK" and the result, or "ERR" and the reason
+	 */
+	public String answer(String request) {
+		String line = request.trim();
+		int space = line.indexOf(' ');
+		String command = space < 0 ? line : line.substring(0, space);
+		String arguments = space < 0 ? "" : line.substring(space + 1).trim();
+
+		try {
+			switch(command) {
+			case "convert":
+				String[] parts = arguments.split("\\s+");
+				if(parts.length != 3) {
+					return "ERR Usage: convert radix newRadix number";
+				}
+				int radix = radix(parts[0]);
+				int newRadix = radix(parts[1]);
+				return "OK " + (cache != null ? cache.convert(parts[2], radix, newRadix)
+						: Converter.convert(parts[2], radix, newRadix));
+			case "twos":
+				return "OK " + twosComplement(arguments);
+			case "stats":
+				return cache != null ? "OK " + cache.hits() + " " + cache.misses() : "OK 0 0";
+			case "ping":
+				return "OK";
+			default:
+				return "ERR Unknown request: \"" + command + "\"";
+			}
+		} catch (IllegalArgumentException e) {
+			// NumberFormatException too
+			return "ERR " + e.getMessage();
+		} catch (RuntimeException e) {
+			// a bug, the request fails but the connection goes on
+			return "ERR " + e;
+		}
+	}
+
+	private static int radix(String radix) {
+		try {
+			return Integer.parseInt(radix);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid radix: " + radix);
+		}
+	}
+
+	/**The conversions of TwoSCompConverter, on an int: the input in its formats (decimal, b then
+	 * the binary 2's complement, 0x then the hexadecimal one, spaces allowed), the binary and
+	 * hexadecimal 2's complements with the same number of bits as it prints and with 32 bits
+	 * @return the decimal, the binary, the hexadecimal, the 32-bit binary and the 32-bit hexadecimal
+	 * @throws NumberFormatException with the message of TwoSCompConverter if the input is invalid
+	 */
+	static String twosComplement(String input) {
+		StringBuilder digits = new StringBuilder(input.length());
+		for(int i=0;i<input.length();i++) {
+			if(!Character.isWhitespace(input.charAt(i))) {
+				digits.append(input.charAt(i));
+			}
+		}
+		String number = digits.toString();
+		if(number.length() > 33) {
+			throw new NumberFormatException("Input value out of range.");
+		}
+
+		int value;
+		int bits;
+		if(number.length() > 2 && number.charAt(0) == '0' && (number.charAt(1) == 'x' || number.charAt(1) == 'X')
+				&& isDigits(number, 2, 16)) {
+			int length = number.length() - 2;
+			if(length > 8) {
+				throw new NumberFormatException("Input value out of range.");
+			}
+			bits = 4 * length;
+			value = signExtend(Converter.parse(number.substring(2), 16), bits);
+		}else if(number.length() > 1 && number.charAt(0) == 'b' && isDigits(number, 1, 2)) {
+			if(number.length() < 3) {
+				throw new NumberFormatException("Invalid input. The minimum length of a binary input should be 3.");
+			}
+			int length = number.length() - 1;
+			// padded with the sign bit to a multiple of 4
+			bits = (length + 3) / 4 * 4;
+			value = signExtend(Converter.parse(number.substring(1), 2), length);
+		}else if(number.length() > 0 && isDigits(number, number.charAt(0) == '-' ? 1 : 0, 10)) {
+			try {
+				value = Integer.parseInt(number);
+			} catch (NumberFormatException e) {
+				throw new NumberFormatException("Input value out of range.");
+			}
+			// the bits of the value and the sign bit, padded to a multiple of 4
+			bits = (33 - Integer.numberOfLeadingZeros(value ^ value >> 31) + 3) / 4 * 4;
+		}else{
+			throw new NumberFormatException("Invalid input");
+		}
+
+		return value + " " + complement(value, bits, 2) + " " + complement(value, bits, 16)
+				+ " " + complement(value, 32, 2) + " " + complement(value, 32, 16);
+	}
+
+	private static boolean isDigits(String number, int from, int radix) {
+		if(from == number.length()) {
+			return false;
+		}
+		for(int i=from;i<number.length();i++) {
+			if(Character.digit(number.charAt(i), radix) < 0 || number.charAt(i) > 127) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int signExtend(long value, int bits) {
+		return (int) (value << (64 - bits) >> (64 - bits));
+	}
+
+	/**The low bits of a value with all the leading zeros
+	 */
+	private static String complement(int value, int bits, int radix) {
+		long unsigned = value & ((1L << bits) - 1);
+		char[] chars = new char[bits / Integer.numberOfTrailingZeros(radix)];
+		int length = Converter.length(unsigned, radix);
+		Arrays.fill(chars, 0, chars.length - length, '0');
+		Converter.format(unsigned, radix, chars, chars.length - length);
+		return new String(chars);
+	}
+
+	/**Stop accepting connections, the open ones go on until their clients close them
+	 */
+	@Override
+	public void close() throws IOException {
+		server.close();
+		executor.shutdown();
+	}
+
+	public static void main(String[] args) {
+		SocketAddress address = null;
+		ConversionCache cache = null;
+		try {
+			for(int i=0;i<args.length;i++) {
+				if(i + 1 == args.length) {
+					throw new IllegalArgumentException("Missing value of " + args[i]);
+				}
+				if(args[i].equals("--cache")) {
+					cache = new ConversionCache(Long.parseLong(args[++i]));
+				}else if(args[i].equals("--port")) {
+					address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[++i]));
+				}else if(args[i].equals("--unix")) {
+					address = UnixDomainSocketAddress.of(args[++i]);
+				}else{
+					throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: java converter.ConversionServer [--cache bytes] [--port N | --unix path]");
+			System.exit(2);
+			return;
+		}
+		if(address == null) {
+			address = new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+		}
+
+		try (ConversionServer server = new ConversionServer(address, cache)) {
+			if(address instanceof UnixDomainSocketAddress) {
+				Path path = ((UnixDomainSocketAddress) address).getPath();
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> path.toFile().delete()));
+			}
+			System.err.println("Listening on " + server.address());
+			server.serve();
+		} catch (IOException e) {
+			System.err.println(e);
+			System.exit(2);
+		}
+	}
+
+}
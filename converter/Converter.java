@@ -7,148 +7,548 @@ import javax.swing.JOptionPane;
  * @since 2017.05.27
  * Description: Positional notation converter
  *
+ * The core works on long for any radix from 2 to 36 (digits 0-9 then A-Z,
+ * parsed in both cases). parse() and format() read and write char[] or
+ * byte[] buffers given by the caller, without any String, regex or double
+ * in between, so a caller converting lots of numbers can reuse the same
+ * buffers. The old String methods below are wrappers of it and give the
+ * same results as before for every valid input (and no more Math.pow
+ * rounding). The numbers too big for a long go to BigConverter.
+ *
  */
 public class Converter {
-	
+
+	public static final int MIN_RADIX = 2;
+	public static final int MAX_RADIX = 36;
+
+	/**The max number of chars of a formatted long: 64 binary digits and a sign
+	 */
+	public static final int MAX_LENGTH = 65;
+
+	private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+	// the value of each ASCII char as a digit, -1 if it is not a digit
+	static final byte[] VALUES = new byte[128];
+
+	// 2^63 in each radix, the magnitude of Long.MIN_VALUE, one more than Long.MAX_VALUE
+	private static final String[] OVERFLOW = new String[MAX_RADIX + 1];
+
+	static {
+		for(int radix=MIN_RADIX;radix<=MAX_RADIX;radix++) {
+			OVERFLOW[radix] = Long.toUnsignedString(Long.MIN_VALUE, radix);
+		}
+		java.util.Arrays.fill(VALUES, (byte) -1);
+		for(int i=0;i<DIGITS.length;i++) {
+			VALUES[DIGITS[i]] = (byte) i;
+			VALUES[Character.toLowerCase(DIGITS[i])] = (byte) i;
+		}
+	}
+
+	/**Parse a number written in chars
+	 * @param chars contains the number, an optional '-' or '+' then the digits
+	 * @param from is the index of the first char
+	 * @param to is the index after the last char
+	 * @param radix is the base, 2 to 36
+	 * @return the number
+	 * @throws NumberFormatException if a char is not a digit of the radix or the number doesn't fit in a long
+	 */
+	public static long parse(char[] chars, int from, int to, int radix) {
+		checkRadix(radix);
+		char sign = from < to ? chars[from] : 0;
+		boolean negative = sign == '-';
+		int i = negative || sign == '+' ? from + 1 : from;
+		if(i == to) {
+			throw invalidNumber(new String(chars, from, to - from));
+		}
+
+		// accumulated negative, like Long.parseLong, so Long.MIN_VALUE fits
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multiplyLimit = limit / radix;
+		long result = 0;
+
+		for(;i<to;i++) {
+			char c = chars[i];
+			int digit = c < 128 ? VALUES[c] : -1;
+			if(digit < 0 || digit >= radix || result < multiplyLimit) {
+				throw invalidNumber(new String(chars, from, to - from));
+			}
+			result *= radix;
+			if(result < limit + digit) {
+				throw invalidNumber(new String(chars, from, to - from));
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	/**Parse a number written in ASCII bytes
+	 * @param bytes contains the number, an optional '-' or '+' then the digits
+	 * @param from is the index of the first byte
+	 * @param to is the index after the last byte
+	 * @param radix is the base, 2 to 36
+	 * @return the number
+	 * @throws NumberFormatException if a byte is not a digit of the radix or the number doesn't fit in a long
+	 */
+	public static long parse(byte[] bytes, int from, int to, int radix) {
+		checkRadix(radix);
+		byte sign = from < to ? bytes[from] : 0;
+		boolean negative = sign == '-';
+		int i = negative || sign == '+' ? from + 1 : from;
+		if(i == to) {
+			throw invalidNumber(bytes, from, to);
+		}
+
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multiplyLimit = limit / radix;
+		long result = 0;
+
+		for(;i<to;i++) {
+			byte b = bytes[i];
+			int digit = b >= 0 ? VALUES[b] : -1;
+			if(digit < 0 || digit >= radix || result < multiplyLimit) {
+				throw invalidNumber(bytes, from, to);
+			}
+			result *= radix;
+			if(result < limit + digit) {
+				throw invalidNumber(bytes, from, to);
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	/**Parse a number
+	 * @param number is an optional '-' or '+' then the digits
+	 * @param radix is the base, 2 to 36
+	 * @return the number
+	 * @throws NumberFormatException if a char is not a digit of the radix or the number doesn't fit in a long
+	 */
+	public static long parse(String number, int radix) {
+		checkRadix(radix);
+		int length = number.length();
+		char sign = length > 0 ? number.charAt(0) : 0;
+		boolean negative = sign == '-';
+		int i = negative || sign == '+' ? 1 : 0;
+		if(i == length) {
+			throw invalidNumber(number);
+		}
+
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multiplyLimit = limit / radix;
+		long result = 0;
+
+		for(;i<length;i++) {
+			char c = number.charAt(i);
+			int digit = c < 128 ? VALUES[c] : -1;
+			if(digit < 0 || digit >= radix || result < multiplyLimit) {
+				throw invalidNumber(number);
+			}
+			result *= radix;
+			if(result < limit + digit) {
+				throw invalidNumber(number);
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	/**Write a number in chars, the letters in upper case
+	 * @param value is the number
+	 * @param radix is the base, 2 to 36
+	 * @param chars is where it is written, it needs up to MAX_LENGTH chars after offset
+	 * @param offset is the index of the first char
+	 * @return the index after the last char
+	 */
+	public static int format(long value, int radix, char[] chars, int offset) {
+		int end = offset + length(value, radix);
+		int i = end;
+
+		// negative, so Long.MIN_VALUE works too
+		long temp = value < 0 ? value : -value;
+		if(Integer.bitCount(radix) == 1) {
+			int shift = Integer.numberOfTrailingZeros(radix);
+			int mask = radix - 1;
+			// -temp is only wrong for Long.MIN_VALUE, and as unsigned it is still right
+			long positive = -temp;
+			do {
+				chars[--i] = DIGITS[(int) (positive & mask)];
+				positive >>>= shift;
+			} while(positive != 0);
+		}else if(radix == 10) {
+			do {
+				long quotient = temp / 10;
+				chars[--i] = (char) ('0' + (int) (quotient * 10 - temp));
+				temp = quotient;
+			} while(temp != 0);
+		}else{
+			do {
+				chars[--i] = DIGITS[(int) -(temp % radix)];
+				temp /= radix;
+			} while(temp != 0);
+		}
+		if(value < 0) {
+			chars[--i] = '-';
+		}
+		return end;
+	}
+
+	/**Write a number in ASCII bytes, the letters in upper case
+	 * @param value is the number
+	 * @param radix is the base, 2 to 36
+	 * @param bytes is where it is written, it needs up to MAX_LENGTH bytes after offset
+	 * @param offset is the index of the first byte
+	 * @return the index after the last byte
+	 */
+	public static int format(long value, int radix, byte[] bytes, int offset) {
+		int end = offset + length(value, radix);
+		write(value, radix, bytes, end);
+		return end;
+	}
+
+	/**Write a number in ASCII bytes ending before end, the length already known
+	 */
+	private static void write(long value, int radix, byte[] bytes, int end) {
+		int i = end;
+
+		long temp = value < 0 ? value : -value;
+		if(Integer.bitCount(radix) == 1) {
+			int shift = Integer.numberOfTrailingZeros(radix);
+			int mask = radix - 1;
+			long positive = -temp;
+			do {
+				bytes[--i] = (byte) DIGITS[(int) (positive & mask)];
+				positive >>>= shift;
+			} while(positive != 0);
+		}else if(radix == 10) {
+			// a division by a constant is a multiplication, the remainder comes from the quotient
+			do {
+				long quotient = temp / 10;
+				bytes[--i] = (byte) ('0' + (int) (quotient * 10 - temp));
+				temp = quotient;
+			} while(temp != 0);
+		}else{
+			do {
+				bytes[--i] = (byte) DIGITS[(int) -(temp % radix)];
+				temp /= radix;
+			} while(temp != 0);
+		}
+		if(value < 0) {
+			bytes[--i] = '-';
+		}
+	}
+
+	/**The number of chars format() writes
+	 * @param value is the number
+	 * @param radix is the base, 2 to 36
+	 * @return the number of digits, and 1 for the sign if it is negative
+	 */
+	public static int length(long value, int radix) {
+		checkRadix(radix);
+		int length = value < 0 ? 2 : 1;
+
+		if(Integer.bitCount(radix) == 1) {
+			long positive = value < 0 ? -value : value;
+			int bits = 64 - Long.numberOfLeadingZeros(positive);
+			int shift = Integer.numberOfTrailingZeros(radix);
+			return bits == 0 ? length : length - 1 + (bits + shift - 1) / shift;
+		}
+
+		if(radix == 10) {
+			for(long temp = value < 0 ? value : -value; temp <= -10; temp /= 10) {
+				length++;
+			}
+			return length;
+		}
+		for(long temp = value < 0 ? value : -value; temp <= -radix; temp /= radix) {
+			length++;
+		}
+		return length;
+	}
+
+	/**Write a number as a String, for the callers that need one anyway
+	 * @param value is the number
+	 * @param radix is the base, 2 to 36
+	 * @return the number in the radix, the letters in upper case
+	 */
+	public static String toString(long value, int radix) {
+		// just the digits, in bytes like the String keeps them
+		byte[] bytes = new byte[length(value, radix)];
+		write(value, radix, bytes, bytes.length);
+		return new String(bytes, java.nio.charset.StandardCharsets.ISO_8859_1);
+	}
+
+	/**Convert a number of any size from a base to another, straight from one to
+	 * the other: the bits are regrouped between two powers of two (2, 4, 8, 16, 32),
+	 * the other bases go through a long or a BigInteger, never through decimal text
+	 * @param number is the number
+	 * @param radix is its base, 2 to 36
+	 * @param newRadix is the new base, 2 to 36
+	 * @return the number in the new base
+	 * @throws NumberFormatException if the number is not a number of the radix
+	 */
+	public static String convert(String number, int radix, int newRadix) {
+		checkRadix(radix);
+		checkRadix(newRadix);
+		if(Integer.bitCount(radix) == 1 && Integer.bitCount(newRadix) == 1) {
+			return regroup(number, radix, newRadix);
+		}
+		if(fitsInLong(number, radix)) {
+			return toString(parse(number, radix), newRadix);
+		}
+		return BigConverter.convert(number, radix, newRadix);
+	}
+
+	/**Tell a number too big for a long from the others without parsing it: after the
+	 * sign and the leading zeros, it has more digits than 2^63, or as many and it is
+	 * bigger, or equal and positive
+	 * @param number is an optional '-' or '+' then the digits
+	 * @param radix is its base, 2 to 36
+	 * @return false if parse() would overflow, true if it fits, either way
+	 *         an invalid number is reported by parse() or by BigConverter
+	 */
+	static boolean fitsInLong(String number, int radix) {
+		checkRadix(radix);
+		int length = number.length();
+		char sign = length > 0 ? number.charAt(0) : 0;
+		boolean negative = sign == '-';
+		int i = negative || sign == '+' ? 1 : 0;
+		while(i < length - 1 && number.charAt(i) == '0') {
+			i++;
+		}
+
+		String overflow = OVERFLOW[radix];
+		if(length - i != overflow.length()) {
+			return length - i < overflow.length();
+		}
+		for(int j=0;i<length;i++,j++) {
+			char c = number.charAt(i);
+			int digit = c < 128 ? VALUES[c] : -1;
+			int limit = VALUES[overflow.charAt(j)];
+			if(digit != limit) {
+				return digit < limit;
+			}
+		}
+		return negative;
+	}
+
+	/**Same as fitsInLong(String, int) on ASCII bytes
+	 * @param bytes contains the number
+	 * @param from is the index of the first byte
+	 * @param to is the index after the last byte
+	 */
+	static boolean fitsInLong(byte[] bytes, int from, int to, int radix) {
+		checkRadix(radix);
+		byte sign = from < to ? bytes[from] : 0;
+		boolean negative = sign == '-';
+		int i = negative || sign == '+' ? from + 1 : from;
+		while(i < to - 1 && bytes[i] == '0') {
+			i++;
+		}
+
+		String overflow = OVERFLOW[radix];
+		if(to - i != overflow.length()) {
+			return to - i < overflow.length();
+		}
+		for(int j=0;i<to;i++,j++) {
+			byte b = bytes[i];
+			int digit = b >= 0 ? VALUES[b] : -1;
+			int limit = VALUES[overflow.charAt(j)];
+			if(digit != limit) {
+				return digit < limit;
+			}
+		}
+		return negative;
+	}
+
+	/**Convert between two powers of two, from the last digit to the first: each digit
+	 * adds its bits to a buffer, and a new digit is taken out of it each time it has
+	 * enough, so it is linear whatever the size of the number, without any division
+	 */
+	private static String regroup(String number, int radix, int newRadix) {
+		int length = number.length();
+		char sign = length > 0 ? number.charAt(0) : 0;
+		boolean negative = sign == '-';
+		int from = negative || sign == '+' ? 1 : 0;
+		if(from == length) {
+			throw invalidNumber(number);
+		}
+
+		int bits = Integer.numberOfTrailingZeros(radix);
+		int newBits = Integer.numberOfTrailingZeros(newRadix);
+		int mask = newRadix - 1;
+		// the new digits, and one more char for the sign
+		char[] chars = new char[(int) (((long) (length - from) * bits + newBits - 1) / newBits) + 1];
+		int i = chars.length;
+
+		int buffer = 0;
+		int count = 0;
+		for(int j=length-1;j>=from;j--) {
+			char c = number.charAt(j);
+			int digit = c < 128 ? VALUES[c] : -1;
+			if(digit < 0 || digit >= radix) {
+				throw invalidNumber(number);
+			}
+			buffer |= digit << count;
+			count += bits;
+			while(count >= newBits) {
+				chars[--i] = DIGITS[buffer & mask];
+				buffer >>>= newBits;
+				count -= newBits;
+			}
+		}
+		if(count > 0) {
+			chars[--i] = DIGITS[buffer];
+		}
+
+		while(i < chars.length - 1 && chars[i] == '0') {
+			i++;
+		}
+		if(negative && chars[i] != '0') {
+			chars[--i] = '-';
+		}
+		return new String(chars, i, chars.length - i);
+	}
+
+	private static void checkRadix(int radix) {
+		if(radix < MIN_RADIX || radix > MAX_RADIX) {
+			throw new IllegalArgumentException("Invalid radix: " + radix);
+		}
+	}
+
+	private static NumberFormatException invalidNumber(String number) {
+		return new NumberFormatException("Invalid number: \"" + number + "\"");
+	}
+
+	private static NumberFormatException invalidNumber(byte[] bytes, int from, int to) {
+		return invalidNumber(new String(bytes, from, to - from, java.nio.charset.StandardCharsets.ISO_8859_1));
+	}
+
 	/**Convert decimal to a new base between 2 and 9
 	 * @param decimalNumber is the decimal number
 	 * @param newBase is the new numeral base
 	 * @return the number in the new base
 	 */
 	public static String decimalToBase2To9 (String decimalNumber , String newBase) {
-		String inverse = "";
-		
-		if( (newBase+"").matches("[2-9]") ) {
-			
-			int base = Integer.parseInt(newBase);
-			int temp = Integer.parseInt(decimalNumber);
-			
-			while(temp != 0) {
-				inverse += temp % base;
-				temp /= base;
-			}
-			
-		}else{
+		int base = base2To9(newBase);
+		if(base < 0) {
 			System.err.println("Invalid base");
+			return "";
 		}
-		
-		
-		return inverseString(inverse);
+		return withoutZero(convert(decimalNumber, 10, base));
 	}
-	
+
 	/**Convert decimal to hexadecimal
 	 * @param decimalNumber is the decimal number
 	 * @return the hexadecimal number
 	 */
 	public static String decimalToHexadecimal(String decimalNumber) {
-		String inverseHexa = "";
-		int temp = Integer.parseInt(decimalNumber);
-		
-		while(temp != 0) {
-			
-			int mod = temp % 16 ;
-			
-			if(mod<10) {
-				inverseHexa += mod;
-			}else{
-				
-				inverseHexa += "ABCDEF".charAt( mod % 10 );
-				
-			}
-			
-			temp /= 16;
-		}
-		return inverseString(inverseHexa);
+		return withoutZero(convert(decimalNumber, 10, 16));
 	}
-	
+
 	/**Convert a number of a base between 2 and 9 to decimal
 	 * @param number is the number of a base between 2 and 9
 	 * @param base is the base of the number
 	 * @return the decimal number
 	 */
 	public static String base2To9ToDecimal(String number,String base) {
-		int decimal = 0;
-		
-		if( (base+"").matches("[2-9]") ) {
-			
-			int validBase = Integer.parseInt(base);
-			
-			if(number.matches("[0-"+(validBase-1)+"]+")) {
-				for(int i=0;i<number.length();i++) {
-					int temp = Integer.parseInt(number.charAt(i)+"");
-					decimal += temp*Math.pow(validBase, number.length()-i-1);
-				}
-				
-			}else{
-				System.err.println("Invalid number");
-			}
-		}else{
+		int validBase = base2To9(base);
+		if(validBase < 0) {
 			System.err.println("Invalid base");
+			return "0";
+		}
+		if(!isDigits(number, validBase, false)) {
+			System.err.println("Invalid number");
+			return "0";
 		}
-		
-		
-		return decimal+"";
+		return convert(number, validBase, 10);
 	}
-	
+
 	/**Convert hexadecimal to decimal
 	 * @param hexa is the hexadecimal number
 	 * @return the decimal number
 	 */
 	public static String hexadecimalToDecimal(String hexa) {
-		
-		int decimal = 0; 
-		
-		if(hexa.matches("[0-9A-F]+")) {
-			for(int i=0;i<hexa.length();i++) {
-				
-				String s = hexa.charAt(i)+"";
-				int temp;
-				if(s.matches("\\d")) {
-					temp = Integer.parseInt(s);					
-				}else{
-					temp = 10 + "ABCDEF".indexOf(s);
-				}
-				decimal += temp*Math.pow(16, hexa.length()-i-1);
-				
-			}
-		}else{
+		// only the upper case, like before
+		if(!isDigits(hexa, 16, true)) {
 			System.err.println("Invalid number");
+			return "0";
 		}
-		
-		return decimal+"";
+		return convert(hexa, 16, 10);
 	}
-	
+
 	/**Convert a number of base between 2 and 9 to hexadecimal
 	 * @param numberBase2To9 is the number
 	 * @param base is the current base
 	 * @return hexadecimal number
 	 */
-	public static String base2To9ToHexadecimal(String numberBase2To9, String base) {		
-		return decimalToHexadecimal(base2To9ToDecimal(numberBase2To9,base));
+	public static String base2To9ToHexadecimal(String numberBase2To9, String base) {
+		int validBase = base2To9(base);
+		if(validBase < 0) {
+			System.err.println("Invalid base");
+			return "";
+		}
+		if(!isDigits(numberBase2To9, validBase, false)) {
+			System.err.println("Invalid number");
+			return "";
+		}
+		return withoutZero(convert(numberBase2To9, validBase, 16));
 	}
-	
-	
+
+
 	/**Convert a hexadecimal number to a base between 2 and 9
 	 * @param hexadecimal is the hexadecimal number
 	 * @param newBase is the new base
 	 * @return the number of the new base
 	 */
 	public static String hexadecimalToBase2To9(String hexadecimal, String newBase) {
-		return decimalToBase2To9(hexadecimalToDecimal(hexadecimal),newBase);
+		// both messages if both are invalid, like before
+		boolean validNumber = isDigits(hexadecimal, 16, true);
+		if(!validNumber) {
+			System.err.println("Invalid number");
+		}
+		int base = base2To9(newBase);
+		if(base < 0) {
+			System.err.println("Invalid base");
+			return "";
+		}
+		return validNumber ? withoutZero(convert(hexadecimal, 16, base)) : "";
+	}
+
+	/**The base of the old methods
+	 * @param base is the base as a String
+	 * @return the base between 2 and 9, -1 if it is not one
+	 */
+	private static int base2To9(String base) {
+		if(base == null || base.length() != 1 || base.charAt(0) < '2' || base.charAt(0) > '9') {
+			return -1;
+		}
+		return base.charAt(0) - '0';
 	}
-	
-	/**Inverse the string
-	 * @param inverse the original string
-	 * @return the inverse string of the original string
+
+	/**The old methods wrote nothing for 0
 	 */
-	private static String inverseString(String inverse) {
-		String s = "";
-		
-		for(int i=inverse.length()-1;i>=0;i--) {
-			s += inverse.charAt(i);
+	private static String withoutZero(String number) {
+		return number.equals("0") ? "" : number;
+	}
+
+	/**
+	 * @param number is the number
+	 * @param radix is the base
+	 * @param upperCase is true if the letters must be in upper case
+	 * @return true if the number has at least one digit and only digits of the radix (no sign)
+	 */
+	private static boolean isDigits(String number, int radix, boolean upperCase) {
+		if(number.isEmpty()) {
+			return false;
+		}
+		for(int i=0;i<number.length();i++) {
+			char c = number.charAt(i);
+			int digit = c < 128 ? VALUES[c] : -1;
+			if(digit < 0 || digit >= radix || (upperCase && Character.isLowerCase(c))) {
+				return false;
+			}
 		}
-		
-		return s;
+		return true;
 	}
 
 }
@@ -0,0 +1,465 @@
+package converter;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Description: Benchmarks of Converter against the JDK
+ *
+ * Every public method of Converter is measured on the same inputs as the
+ * JDK method doing the same work (Long.parseLong, Long.toString,
+ * Integer.toString(int, radix), Integer.toBinaryString), side by side.
+ * The inputs are 4096 random numbers with as many of each bit length
+ * (1 to 63, or 31 for the int ones), a quarter of them negative where the
+ * method takes a sign: short and long numbers like in real input, where a
+ * uniform random long would almost always have 19 digits.
+ *
+ * Each benchmark runs warmup iterations, then some measured iterations,
+ * each one repeated until it takes at least 100 ms. The warmup lasts at
+ * least --warmup seconds (1 by default), and until two iterations in a
+ * row take the same time within 5%, so the JIT is done with the code
+ * before anything is measured. It prints the ns per op (median of the
+ * iterations, with the min and the max) and the bytes allocated per op
+ * by the benchmark thread.
+ *
+ * There is no JMH here (no build to pull it), so this is a plain loop
+ * with the usual care: warmup, results kept in a sink so the JIT can't
+ * drop the work, and the inputs built before any timing. For stable
+ * numbers, give the JVM a fixed heap and run it alone on the machine:
+ *     java -Xms1g -Xmx1g converter.ConverterBench
+ *
+ * Usage: java converter.ConverterBench [--seed N] [--warmup seconds] [--iterations N] [filter ...]
+ * (only the benchmarks whose name contains one of the filters)
+ *
+ */
+public class ConverterBench {
+
+	private static final int SIZE = 1 << 12;
+	private static final long MIN_ITERATION_NANOS = 100_000_000L;
+	// the warmup stops there even if the times still move
+	private static final int MAX_WARMUP_FACTOR = 10;
+
+	// everything the benchmarks compute ends up here
+	private static volatile long sink;
+
+	private interface Benchmark {
+		/**Do an op on each input
+		 * @return something out of the results, for the sink
+		 */
+		long run();
+	}
+
+	private final List<String> filters = new ArrayList<>();
+	private long seed = 2017;
+	private int warmup = 1; // seconds
+	private int iterations = 10;
+
+	private long[] longs;
+	private long[] skewed;
+	private int[] ints;
+	private String[] decimals;
+	private String[] positiveDecimals;
+	private String[] hexadecimals;
+	private String[] binaries;
+	private String[] octals;
+	private String[] bigDecimals;
+	private char[][] decimalChars;
+	private byte[][] decimalBytes;
+
+	private ConverterBench(String[] args) {
+		for(int i=0;i<args.length;i++) {
+			String arg = args[i];
+			if(arg.startsWith("--") && i + 1 == args.length) {
+				throw usage();
+			}
+			if(arg.equals("--seed")) {
+				seed = number(args[++i]);
+			}else if(arg.equals("--warmup")) {
+				warmup = number(args[++i]);
+			}else if(arg.equals("--iterations")) {
+				iterations = number(args[++i]);
+			}else if(arg.startsWith("-")) {
+				throw usage();
+			}else{
+				filters.add(arg);
+			}
+		}
+	}
+
+	private static int number(String s) {
+		try {
+			int n = Integer.parseInt(s);
+			if(n >= 1) {
+				return n;
+			}
+		} catch (NumberFormatException e) {
+			// invalid
+		}
+		throw usage();
+	}
+
+	private static IllegalArgumentException usage() {
+		return new IllegalArgumentException("Usage: java converter.ConverterBench [--seed N] [--warmup seconds] [--iterations N] [filter ...]");
+	}
+
+	/**The inputs, the same ones from a run to another with the same seed
+	 */
+	private void inputs() {
+		Random random = new Random(seed);
+		longs = new long[SIZE];
+		skewed = new long[SIZE];
+		ints = new int[SIZE];
+		decimals = new String[SIZE];
+		positiveDecimals = new String[SIZE];
+		hexadecimals = new String[SIZE];
+		binaries = new String[SIZE];
+		octals = new String[SIZE];
+		bigDecimals = new String[SIZE];
+		decimalChars = new char[SIZE][];
+		decimalBytes = new byte[SIZE][];
+
+		for(int i=0;i<SIZE;i++) {
+			long positive = random.nextLong() >>> 1 >>> random.nextInt(63);
+			longs[i] = random.nextInt(4) == 0 ? -positive : positive;
+			int positiveInt = random.nextInt() >>> 1 >>> random.nextInt(31);
+			ints[i] = random.nextInt(4) == 0 ? -positiveInt : positiveInt;
+
+			decimals[i] = Long.toString(longs[i]);
+			positiveDecimals[i] = Long.toString(positive);
+			hexadecimals[i] = Long.toHexString(positive).toUpperCase();
+			binaries[i] = Long.toBinaryString(positive);
+			octals[i] = Long.toOctalString(positive);
+			decimalChars[i] = decimals[i].toCharArray();
+			decimalBytes[i] = decimals[i].getBytes(java.nio.charset.StandardCharsets.ISO_8859_1);
+			// 20 to 100 digits, too big for a long
+			bigDecimals[i] = new BigInteger(66 + random.nextInt(267), random).toString();
+		}
+		// 9 out of 10 are one of 256 hot values, for the cache
+		for(int i=0;i<SIZE;i++) {
+			skewed[i] = random.nextInt(10) == 0 ? longs[i] : longs[random.nextInt(256)];
+		}
+	}
+
+	private void run() {
+		System.out.printf("%s %s, warmup %d s, iterations %d, %d inputs, seed %d%n", System.getProperty("java.vm.name"),
+				System.getProperty("java.version"), warmup, iterations, SIZE, seed);
+		inputs();
+		System.out.println();
+		System.out.printf("  %-36s %10s %10s %10s %10s%n", "", "ns/op", "min", "max", "B/op");
+
+		char[] chars = new char[Converter.MAX_LENGTH];
+		byte[] bytes = new byte[Converter.MAX_LENGTH];
+
+		report("parse(String, 10)", () -> {
+			long sum = 0;
+			for(String s : decimals) {
+				sum += Converter.parse(s, 10);
+			}
+			return sum;
+		});
+		report("  Long.parseLong(String, 10)", () -> {
+			long sum = 0;
+			for(String s : decimals) {
+				sum += Long.parseLong(s, 10);
+			}
+			return sum;
+		});
+		report("parse(String, 16)", () -> {
+			long sum = 0;
+			for(String s : hexadecimals) {
+				sum += Converter.parse(s, 16);
+			}
+			return sum;
+		});
+		report("  Long.parseLong(String, 16)", () -> {
+			long sum = 0;
+			for(String s : hexadecimals) {
+				sum += Long.parseLong(s, 16);
+			}
+			return sum;
+		});
+		report("parse(char[], 10)", () -> {
+			long sum = 0;
+			for(char[] c : decimalChars) {
+				sum += Converter.parse(c, 0, c.length, 10);
+			}
+			return sum;
+		});
+		report("parse(byte[], 10)", () -> {
+			long sum = 0;
+			for(byte[] b : decimalBytes) {
+				sum += Converter.parse(b, 0, b.length, 10);
+			}
+			return sum;
+		});
+
+		report("format(long, 10, char[])", () -> {
+			long sum = 0;
+			for(long value : longs) {
+				sum += Converter.format(value, 10, chars, 0);
+			}
+			return sum + chars[0];
+		});
+		report("format(long, 10, byte[])", () -> {
+			long sum = 0;
+			for(long value : longs) {
+				sum += Converter.format(value, 10, bytes, 0);
+			}
+			return sum + bytes[0];
+		});
+		report("format(long, 16, byte[])", () -> {
+			long sum = 0;
+			for(long value : longs) {
+				sum += Converter.format(value, 16, bytes, 0);
+			}
+			return sum + bytes[0];
+		});
+		report("length(long, 10)", () -> {
+			long sum = 0;
+			for(long value : longs) {
+				sum += Converter.length(value, 10);
+			}
+			return sum;
+		});
+
+		for(int radix : new int[] {2, 10, 16, 36}) {
+			report("toString(long, " + radix + ")", () -> {
+				long sum = 0;
+				for(long value : longs) {
+					sum += Converter.toString(value, radix).length();
+				}
+				return sum;
+			});
+			report("  Long.toString(long, " + radix + ")", () -> {
+				long sum = 0;
+				for(long value : longs) {
+					sum += Long.toString(value, radix).length();
+				}
+				return sum;
+			});
+			report("toString(int, " + radix + ")", () -> {
+				long sum = 0;
+				for(int value : ints) {
+					sum += Converter.toString(value, radix).length();
+				}
+				return sum;
+			});
+			report("  Integer.toString(int, " + radix + ")", () -> {
+				long sum = 0;
+				for(int value : ints) {
+					sum += Integer.toString(value, radix).length();
+				}
+				return sum;
+			});
+		}
+		report("toString(positive int, 2)", () -> {
+			long sum = 0;
+			for(int value : ints) {
+				sum += Converter.toString(value & Integer.MAX_VALUE, 2).length();
+			}
+			return sum;
+		});
+		report("  Integer.toBinaryString(int)", () -> {
+			long sum = 0;
+			for(int value : ints) {
+				sum += Integer.toBinaryString(value & Integer.MAX_VALUE).length();
+			}
+			return sum;
+		});
+
+		checkCache();
+		ConversionCache cache = new ConversionCache(1 << 20);
+		report("ConversionCache.toString(skewed, 10)", () -> {
+			long sum = 0;
+			for(long value : skewed) {
+				sum += cache.toString(value, 10).length();
+			}
+			return sum;
+		});
+		report("  toString(skewed, 10)", () -> {
+			long sum = 0;
+			for(long value : skewed) {
+				sum += Converter.toString(value, 10).length();
+			}
+			return sum;
+		});
+
+		report("convert(String, 10, 16)", () -> {
+			long sum = 0;
+			for(String s : decimals) {
+				sum += Converter.convert(s, 10, 16).length();
+			}
+			return sum;
+		});
+		report("  Long.toString(parseLong(), 16)", () -> {
+			long sum = 0;
+			for(String s : decimals) {
+				sum += Long.toString(Long.parseLong(s, 10), 16).length();
+			}
+			return sum;
+		});
+		report("convert(String, 2, 16)", () -> {
+			long sum = 0;
+			for(String s : binaries) {
+				sum += Converter.convert(s, 2, 16).length();
+			}
+			return sum;
+		});
+		report("  Long.toString(parseLong(), 16)", () -> {
+			long sum = 0;
+			for(String s : binaries) {
+				sum += Long.toString(Long.parseLong(s, 2), 16).length();
+			}
+			return sum;
+		});
+		report("convert(big String, 10, 16)", () -> {
+			long sum = 0;
+			for(String s : bigDecimals) {
+				sum += Converter.convert(s, 10, 16).length();
+			}
+			return sum;
+		});
+		report("  new BigInteger().toString(16)", () -> {
+			long sum = 0;
+			for(String s : bigDecimals) {
+				sum += new BigInteger(s).toString(16).length();
+			}
+			return sum;
+		});
+
+		// the old String methods, on the non-negative numbers they take
+		report("decimalToBase2To9", () -> {
+			long sum = 0;
+			for(String s : positiveDecimals) {
+				sum += Converter.decimalToBase2To9(s, "8").length();
+			}
+			return sum;
+		});
+		report("decimalToHexadecimal", () -> {
+			long sum = 0;
+			for(String s : positiveDecimals) {
+				sum += Converter.decimalToHexadecimal(s).length();
+			}
+			return sum;
+		});
+		report("base2To9ToDecimal", () -> {
+			long sum = 0;
+			for(String s : octals) {
+				sum += Converter.base2To9ToDecimal(s, "8").length();
+			}
+			return sum;
+		});
+		report("hexadecimalToDecimal", () -> {
+			long sum = 0;
+			for(String s : hexadecimals) {
+				sum += Converter.hexadecimalToDecimal(s).length();
+			}
+			return sum;
+		});
+		report("base2To9ToHexadecimal", () -> {
+			long sum = 0;
+			for(String s : binaries) {
+				sum += Converter.base2To9ToHexadecimal(s, "2").length();
+			}
+			return sum;
+		});
+		report("hexadecimalToBase2To9", () -> {
+			long sum = 0;
+			for(String s : hexadecimals) {
+				sum += Converter.hexadecimalToBase2To9(s, "2").length();
+			}
+			return sum;
+		});
+	}
+
+	/**Stress check of the cache before it is measured: a small cache gets far more values than
+	 * it holds, and each one must be found again right after it was put, whatever it evicted
+	 */
+	private static void checkCache() {
+		ConversionCache cache = new ConversionCache(1024L * ConversionCache.ENTRY_BYTES, 1);
+		for(long value=0;value<1<<16;value++) {
+			for(int radix : new int[] {10, 16, 36}) {
+				long hits = cache.hits();
+				String text = cache.toString(value, radix);
+				if(!text.equals(Converter.toString(value, radix)) || !cache.toString(value, radix).equals(text)
+						|| !cache.toString(value, radix).equals(text) || cache.hits() != hits + 2) {
+					throw new IllegalStateException("Cache lost " + value + " in radix " + radix);
+				}
+			}
+		}
+	}
+
+	private void report(String name, Benchmark benchmark) {
+		if(!filters.isEmpty() && filters.stream().noneMatch(name::contains)) {
+			return;
+		}
+
+		// how many runs make an iteration long enough, then more iterations until the JIT is done with
+		// the code: at least the warmup time, and until two iterations in a row take about the same time
+		int repeat = 1;
+		long start = System.nanoTime();
+		long previous = 0;
+		while(true) {
+			long time = System.nanoTime();
+			for(int r=0;r<repeat;r++) {
+				sink += benchmark.run();
+			}
+			time = System.nanoTime() - time;
+			if(time < MIN_ITERATION_NANOS && repeat < 1 << 20) {
+				repeat = (int) Math.min(1 << 20, (long) repeat * MIN_ITERATION_NANOS / Math.max(1, time) + 1);
+				previous = 0;
+				continue;
+			}
+			long elapsed = System.nanoTime() - start;
+			boolean stable = Math.abs(time - previous) < previous / 20;
+			if(elapsed >= warmup * 1_000_000_000L && stable || elapsed >= warmup * MAX_WARMUP_FACTOR * 1_000_000_000L) {
+				break;
+			}
+			previous = time;
+		}
+
+		double[] times = new double[iterations];
+		long allocated = 0;
+		for(int i=0;i<iterations;i++) {
+			long bytes = allocatedBytes();
+			long time = System.nanoTime();
+			for(int r=0;r<repeat;r++) {
+				sink += benchmark.run();
+			}
+			time = System.nanoTime() - time;
+			allocated += allocatedBytes() - bytes;
+			times[i] = (double) time / repeat / SIZE;
+		}
+
+		Arrays.sort(times);
+		double median = times.length % 2 == 1 ? times[times.length / 2]
+				: (times[times.length / 2 - 1] + times[times.length / 2]) / 2;
+		String perOp = allocatedBytes() < 0 ? "n/a" : String.format("%.1f", (double) allocated / iterations / repeat / SIZE);
+		System.out.printf("  %-36s %10.1f %10.1f %10.1f %10s%n", name, median, times[0], times[times.length - 1], perOp);
+	}
+
+	/**
+	 * @return the bytes allocated by this thread so far, negative if the JVM can't tell
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+		}
+		return -1;
+	}
+
+	public static void main(String[] args) {
+		try {
+			new ConverterBench(args).run();
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+		}
+	}
+
+}
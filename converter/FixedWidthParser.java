@@ -0,0 +1,204 @@
+package converter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Description: Parser of columns of fixed width hexadecimal or binary numbers
+ *
+ * The records are width ASCII digits each, stride bytes apart (e.g.
+ * width + 1 with a line break after each one), and they are parsed in bulk
+ * into a long[]. The digits are read 8 at a time in a long (SWAR, SIMD
+ * within a register): the 8 chars are checked with a few additions and
+ * masks, without any branch per char, then their values are packed
+ * together with shifts (hexadecimal) or one multiplication (binary). The
+ * first width % 8 digits are read in a word too, the other lanes replaced
+ * by leading zeros, except at the very start or end of a small buffer where
+ * there are not 8 bytes around them: they are parsed one char at a time.
+ *
+ * Hexadecimal digits are parsed in both cases, 16 of them give the 64 bits
+ * of the long like Long.parseUnsignedLong, and the same for 64 binary digits.
+ *
+ */
+public class FixedWidthParser {
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+	private static final long ZEROS = 0x3030303030303030L;
+
+	// 8 bytes of a heap or direct buffer in one read, the first one in the low byte whatever the
+	// order of the buffer (ByteBuffer.getLong() is a virtual call when both kinds of buffers are used)
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private FixedWidthParser() {
+	}
+
+	/**Parse hexadecimal records
+	 * @param records are the records, from the position to the limit, the position is moved after the ones parsed
+	 * @param width is the number of digits of a record, 1 to 16
+	 * @param stride is the number of bytes from a record to the next one, width or more
+	 * @param values is where the values go
+	 * @param offset is the index of the first value
+	 * @return the number of records parsed: all the whole ones, or as many as values can hold
+	 * @throws NumberFormatException if a record is not a number, the position is then not moved
+	 */
+	public static int parseHexadecimal(ByteBuffer records, int width, int stride, long[] values, int offset) {
+		return parse(records, 16, width, stride, values, offset);
+	}
+
+	/**Parse binary records
+	 * @param records are the records, from the position to the limit, the position is moved after the ones parsed
+	 * @param width is the number of digits of a record, 1 to 64
+	 * @param stride is the number of bytes from a record to the next one, width or more
+	 * @param values is where the values go
+	 * @param offset is the index of the first value
+	 * @return the number of records parsed: all the whole ones, or as many as values can hold
+	 * @throws NumberFormatException if a record is not a number, the position is then not moved
+	 */
+	public static int parseBinary(ByteBuffer records, int width, int stride, long[] values, int offset) {
+		return parse(records, 2, width, stride, values, offset);
+	}
+
+	private static int parse(ByteBuffer records, int radix, int width, int stride, long[] values, int offset) {
+		int bits = radix == 16 ? 4 : 1;
+		if(width < 1 || width * bits > 64 || stride < width) {
+			throw new IllegalArgumentException("Invalid width or stride: " + width + ", " + stride);
+		}
+
+		int start = records.position();
+		int limit = records.limit();
+		int count = limit - start < width ? 0 : Math.min((limit - start - width) / stride + 1, values.length - offset);
+
+		// one loop per radix, so each one only has its own arithmetic
+		if(radix == 16) {
+			parseHexadecimal(records, start, count, width, stride, values, offset);
+		}else{
+			parseBinary(records, start, count, width, stride, values, offset);
+		}
+
+		records.position(start + count * stride > limit ? limit : start + count * stride);
+		return count;
+	}
+
+	private static void parseHexadecimal(ByteBuffer buffer, int start, int count, int width, int stride, long[] values, int offset) {
+		// the first digits that don't make a whole word of 8
+		int head = width & 7;
+		int position = start;
+		for(int n=0;n<count;n++,position+=stride) {
+			long value = head == 0 ? 0 : head(buffer, start, position, width, head, 16);
+
+			// the -1 of an invalid word is kept there, checked once for the whole record
+			long invalid = value;
+			for(int i=position+head;i<position+width;i+=8) {
+				long digits = hexadecimal8((long) LONGS.get(buffer, i));
+				invalid |= digits;
+				value = value << 32 | digits;
+			}
+			if(invalid < 0) {
+				throw invalidRecord(buffer, start, position, width);
+			}
+			values[offset + n] = value;
+		}
+	}
+
+	private static void parseBinary(ByteBuffer buffer, int start, int count, int width, int stride, long[] values, int offset) {
+		int head = width & 7;
+		int position = start;
+		for(int n=0;n<count;n++,position+=stride) {
+			long value = head == 0 ? 0 : head(buffer, start, position, width, head, 2);
+
+			long invalid = value;
+			for(int i=position+head;i<position+width;i+=8) {
+				long digits = binary8((long) LONGS.get(buffer, i));
+				invalid |= digits;
+				value = value << 8 | digits;
+			}
+			if(invalid < 0) {
+				throw invalidRecord(buffer, start, position, width);
+			}
+			values[offset + n] = value;
+		}
+	}
+
+	/**The first head digits of a record, in a word of 8 bytes read from the record or ending after them,
+	 * the other lanes replaced by leading zeros, or one char at a time when there are not 8 bytes around
+	 * @return their value, -1 if one of them is not a digit
+	 */
+	private static long head(ByteBuffer buffer, int start, int position, int width, int head, int radix) {
+		long word;
+		if(position + 8 <= buffer.limit()) {
+			word = (long) LONGS.get(buffer, position) << 8 * (8 - head) | ZEROS >>> 8 * head;
+		}else if(position + head - 8 >= 0) {
+			long low = (1L << 8 * (8 - head)) - 1;
+			word = (long) LONGS.get(buffer, position + head - 8) & ~low | ZEROS & low;
+		}else{
+			return parseSlowly(buffer, start, position, width, head, radix);
+		}
+		return radix == 16 ? hexadecimal8(word) : binary8(word);
+	}
+
+	/**
+	 * @param word is 8 chars, the first one in the low byte
+	 * @return their value as hexadecimal digits, -1 if one of them is not one
+	 */
+	static long hexadecimal8(long word) {
+		// a lane gets its high bit if the char is >= low, for a char < 0x80 there's no carry to the next lane
+		long lower = word | 0x2020202020202020L;
+		long digit = (word + ONES * (0x80 - '0')) & ~(word + ONES * (0x7F - '9'));
+		long letter = (lower + ONES * (0x80 - 'a')) & ~(lower + ONES * (0x7F - 'f'));
+		if((word & HIGH_BITS) != 0 || ((digit | letter) & HIGH_BITS) != HIGH_BITS) {
+			return -1;
+		}
+
+		// '0'-'9' are 0x30-0x39 and 'A'-'F' 0x41-0x46 (0x61-0x66), the low 4 bits, plus 9 for the letters
+		long nibbles = (word & 0x0F0F0F0F0F0F0F0FL) + ((letter & HIGH_BITS) >>> 7) * 9;
+
+		// the first char in the high byte, then the nibbles packed 2 by 2, 4 by 4, 8 by 8
+		long packed = Long.reverseBytes(nibbles);
+		packed = (packed | packed >>> 4) & 0x00FF00FF00FF00FFL;
+		packed = (packed | packed >>> 8) & 0x0000FFFF0000FFFFL;
+		return (packed | packed >>> 16) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * @param word is 8 chars, the first one in the low byte
+	 * @return their value as binary digits, -1 if one of them is not one
+	 */
+	static long binary8(long word) {
+		// '0' is 0x30 and '1' 0x31
+		if((word & 0xFEFEFEFEFEFEFEFEL) != ZEROS) {
+			return -1;
+		}
+		// the bit of the char i goes to the bit 63 - i, and no two bits of the product add up
+		return (word & ONES) * 0x8040201008040201L >>> 56;
+	}
+
+	/**One char at a time, for the first digits of the records too close to the ends of a small buffer
+	 */
+	private static long parseSlowly(ByteBuffer buffer, int start, int position, int width, int head, int radix) {
+		int bits = radix == 16 ? 4 : 1;
+		long value = 0;
+		for(int i=position;i<position+head;i++) {
+			byte b = buffer.get(i);
+			int digit = b >= 0 ? Converter.VALUES[b] : -1;
+			if(digit < 0 || digit >= radix) {
+				throw invalidRecord(buffer, start, position, width);
+			}
+			value = value << bits | digit;
+		}
+		return value;
+	}
+
+	private static NumberFormatException invalidRecord(ByteBuffer buffer, int start, int position, int width) {
+		byte[] bytes = new byte[width];
+		for(int i=0;i<width;i++) {
+			bytes[i] = buffer.get(position + i);
+		}
+		return new NumberFormatException("Invalid number at byte " + (position - start) + ": \""
+				+ new String(bytes, StandardCharsets.ISO_8859_1) + "\"");
+	}
+
+}
@@ -0,0 +1,147 @@
+package converter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Description: Lines of ASCII text over a socket channel, for ConversionServer and ConversionClient
+ *
+ * The lines are read and written through buffers straight on the channel,
+ * without the streams of Channels.newInputStream(), which hold the same
+ * lock to read and to write: here a thread can read while another one
+ * writes. Each side is used by one thread at a time, unless the lines
+ * written are flushed before a read (a server answering the requests it
+ * reads), then both sides are used by the same thread.
+ *
+ */
+final class LineChannel implements Closeable {
+
+	/**A line longer than the max, the rest of the input can't be read
+	 */
+	static final class LineTooLongException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		private LineTooLongException(int maxLength) {
+			super("Line too long: more than " + maxLength + " chars");
+		}
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final SocketChannel channel;
+	private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE).flip();
+	private final ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+	private final boolean flushBeforeRead;
+	private byte[] line = new byte[256];
+
+	/**
+	 * @param channel is the socket
+	 * @param flushBeforeRead is true to send the lines written before waiting for the input,
+	 *        so they are never held back by a line that is not complete yet
+	 */
+	LineChannel(SocketChannel channel, boolean flushBeforeRead) {
+		this.channel = channel;
+		this.flushBeforeRead = flushBeforeRead;
+	}
+
+	/**Read a line, without the '\n' and the '\r' before it
+	 * @param maxLength is the max number of chars
+	 * @return the line, null at the end of the input
+	 * @throws LineTooLongException if the line is longer than maxLength
+	 */
+	String readLine(int maxLength) throws IOException {
+		int length = 0;
+		while(true) {
+			if(!input.hasRemaining()) {
+				if(flushBeforeRead && output.position() > 0) {
+					flush();
+				}
+				input.clear();
+				int read = channel.read(input);
+				input.flip();
+				if(read < 0) {
+					// the last line may have no '\n'
+					return length == 0 ? null : text(length);
+				}
+			}
+			while(input.hasRemaining()) {
+				byte b = input.get();
+				if(b == '\n') {
+					return text(length);
+				}
+				if(length == maxLength) {
+					throw new LineTooLongException(maxLength);
+				}
+				if(length == line.length) {
+					line = Arrays.copyOf(line, Math.min(line.length * 2, Math.max(maxLength, 1)));
+				}
+				line[length++] = b;
+			}
+		}
+	}
+
+	private String text(int length) {
+		if(length > 0 && line[length - 1] == '\r') {
+			length--;
+		}
+		return new String(line, 0, length, StandardCharsets.ISO_8859_1);
+	}
+
+	/**Write a line, it is sent when the buffer is full or on flush()
+	 * @param text is the line, without '\n'
+	 * @throws IllegalArgumentException if it is not a line (see check()), nothing is written then
+	 */
+	void writeLine(CharSequence text) throws IOException {
+		check(text);
+		for(int i=0;i<text.length();i++) {
+			if(!output.hasRemaining()) {
+				flush();
+			}
+			output.put((byte) text.charAt(i));
+		}
+		if(!output.hasRemaining()) {
+			flush();
+		}
+		output.put((byte) '\n');
+	}
+
+	/**Check that a text can be sent as one line: the chars are written as single bytes
+	 * @param text is the line, without '\n'
+	 * @throws IllegalArgumentException if it has a '\r', a '\n' or a char over 0xFF
+	 */
+	static void check(CharSequence text) {
+		for(int i=0;i<text.length();i++) {
+			char c = text.charAt(i);
+			if(c == '\n' || c == '\r' || c > 0xFF) {
+				throw new IllegalArgumentException(String.format("Invalid char in a line: \\u%04X", (int) c));
+			}
+		}
+	}
+
+	/**Send the lines written
+	 */
+	void flush() throws IOException {
+		output.flip();
+		while(output.hasRemaining()) {
+			channel.write(output);
+		}
+		output.clear();
+	}
+
+	/**Send the lines written, then tell the other side there are no more
+	 */
+	void shutdownOutput() throws IOException {
+		flush();
+		channel.shutdownOutput();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}